@@ -0,0 +1,154 @@
+import android.content.ComponentName;
+import android.os.Handler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pending asynchronous wallpaper apply started by LiveWallpaperManager.setWallpaperAsync
+ * <p>
+ * Completes when engine reports that it was shown, fails on timeout, bind error or engine death
+ * Callback always called once on main thread
+ */
+public class ApplyRequest implements WallpaperConnection.Listener {
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    private final ComponentName componentName;
+    private final IApplyCallback callback;
+    private final Handler mainHandler;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private volatile WallpaperConnection wallpaperConnection;
+    private long timeout;
+    private final Runnable timeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            fail("Timeout after " + timeout + " ms waiting for wallpaper engine");
+        }
+    };
+
+    /**
+     * Constructor for Apply Request
+     *
+     * @param componentName Wallpaper service component
+     * @param callback      Callback for apply result, may be null
+     */
+    ApplyRequest(ComponentName componentName, IApplyCallback callback) {
+        this.componentName = componentName;
+        this.callback = callback;
+        this.mainHandler = WallpaperThreads.getMainHandler();
+    }
+
+    /**
+     * Start timeout countdown
+     *
+     * @param timeout Timeout in milliseconds
+     */
+    void start(long timeout) {
+        this.timeout = timeout;
+        mainHandler.postDelayed(timeoutRunnable, timeout);
+    }
+
+    /**
+     * Wait for engine of connection, completes immediately if engine already shown
+     *
+     * @param wallpaperConnection Active connection of applied wallpaper
+     */
+    void attach(WallpaperConnection wallpaperConnection) {
+        this.wallpaperConnection = wallpaperConnection;
+        wallpaperConnection.addListener(this);
+        if (done.get()) {
+            wallpaperConnection.removeListener(this);
+        } else if (wallpaperConnection.isShown()) {
+            succeed();
+        }
+    }
+
+    /**
+     * Cancel request, callback will not be called
+     *
+     * @return true if request was pending
+     */
+    public boolean cancel() {
+        return finish();
+    }
+
+    /**
+     * @return true if request completed, failed or cancelled
+     */
+    public boolean isDone() {
+        return done.get();
+    }
+
+    /**
+     * @return Wallpaper service component of this request
+     */
+    public ComponentName getComponent() {
+        return componentName;
+    }
+
+    @Override
+    public void onEngineAttached(WallpaperConnection connection) {
+    }
+
+    @Override
+    public void onEngineShown(WallpaperConnection connection) {
+        succeed();
+    }
+
+    @Override
+    public void onEngineDied(WallpaperConnection connection) {
+        fail("Wallpaper engine died");
+    }
+
+    @Override
+    public void onRecoveryFailed(WallpaperConnection connection) {
+        fail("Wallpaper engine could not be recovered");
+    }
+
+    void succeed() {
+        if (finish() && callback != null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onWallpaperApplied(componentName);
+                }
+            });
+        }
+    }
+
+    void fail(final String reason) {
+        if (finish() && callback != null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onWallpaperApplyFailed(componentName, reason);
+                }
+            });
+        }
+    }
+
+    /**
+     * Mark request as done and detach it from connection
+     *
+     * @return true if request was pending
+     */
+    private boolean finish() {
+        if (!done.compareAndSet(false, true)) {
+            return false;
+        }
+        mainHandler.removeCallbacks(timeoutRunnable);
+        WallpaperConnection connection = wallpaperConnection;
+        if (connection != null) {
+            connection.removeListener(this);
+        }
+        return true;
+    }
+
+    /**
+     * IApplyCallback interface for receive result of asynchronous apply
+     */
+    public interface IApplyCallback {
+        void onWallpaperApplied(ComponentName componentName);
+
+        void onWallpaperApplyFailed(ComponentName componentName, String reason);
+    }
+}
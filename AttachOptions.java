@@ -0,0 +1,166 @@
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+
+/**
+ * Attach options of wallpaper engine attached by WallpaperConnection
+ * <p>
+ * Full screen engine attached to host window and renders at display size
+ * Preview engine attached to own PreviewWindow placed at x, y of host window and sized to width and height,
+ * engine surface fills that window, so engine renders at preview size and browsing wallpapers costs much less rendering
+ * Width and height also passed to engine as desired size
+ */
+public final class AttachOptions {
+    /**
+     * Window type used for attaching engine into host window, WindowManager.LayoutParams.TYPE_APPLICATION_MEDIA_OVERLAY
+     */
+    public static final int TYPE_MEDIA_OVERLAY = 1004;
+
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final int windowType;
+    private final boolean preview;
+
+    /**
+     * Constructor for Attach Options
+     *
+     * @param x          Left of preview window in host window, ignored for full screen options
+     * @param y          Top of preview window in host window, ignored for full screen options
+     * @param width      Width in pixels, 0 with 0 height for full screen engine
+     * @param height     Height in pixels, 0 with 0 width for full screen engine
+     * @param windowType Window type of engine
+     * @param preview    true if engine should run in preview mode
+     */
+    public AttachOptions(int x, int y, int width, int height, int windowType, boolean preview) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.windowType = windowType;
+        this.preview = preview;
+    }
+
+    /**
+     * @return options for applied wallpaper, engine attached to host window at display size
+     */
+    public static AttachOptions fullScreen() {
+        return new AttachOptions(0, 0, 0, 0, TYPE_MEDIA_OVERLAY, false);
+    }
+
+    /**
+     * Options for picker preview at fraction of display resolution, placed at top left of host window
+     *
+     * @param scale Fraction of display size, in range (0, 1]
+     * @return preview options
+     */
+    public static AttachOptions preview(float scale) {
+        if (!(scale > 0 && scale <= 1)) {
+            throw new IllegalArgumentException("Scale must be in range (0, 1], was " + scale);
+        }
+        DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+        return preview(Math.max(1, Math.round(displayMetrics.widthPixels * scale)), Math.max(1, Math.round(displayMetrics.heightPixels * scale)));
+    }
+
+    /**
+     * Options for picker preview of given size, placed at top left of host window
+     *
+     * @param width  Width of preview in pixels
+     * @param height Height of preview in pixels
+     * @return preview options
+     */
+    public static AttachOptions preview(int width, int height) {
+        return preview(0, 0, width, height);
+    }
+
+    /**
+     * Options for picker preview over preview card
+     *
+     * @param x      Left of preview in host window
+     * @param y      Top of preview in host window
+     * @param width  Width of preview in pixels
+     * @param height Height of preview in pixels
+     * @return preview options
+     */
+    public static AttachOptions preview(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Preview size must be positive, was " + width + "x" + height);
+        }
+        return new AttachOptions(x, y, width, height, TYPE_MEDIA_OVERLAY, true);
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return width of engine surface in pixels with display size applied
+     */
+    public int getDesiredWidth() {
+        DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+        return width > 0 ? width : displayMetrics.widthPixels;
+    }
+
+    /**
+     * @return height of engine surface in pixels with display size applied
+     */
+    public int getDesiredHeight() {
+        DisplayMetrics displayMetrics = Resources.getSystem().getDisplayMetrics();
+        return height > 0 ? height : displayMetrics.heightPixels;
+    }
+
+    public int getWindowType() {
+        return windowType;
+    }
+
+    public boolean isPreview() {
+        return preview;
+    }
+
+    /**
+     * @return true if engine attached to host window at display size
+     */
+    public boolean isFullScreen() {
+        return width <= 0 && height <= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AttachOptions)) return false;
+        AttachOptions that = (AttachOptions) o;
+        return x == that.x
+                && y == that.y
+                && width == that.width
+                && height == that.height
+                && windowType == that.windowType
+                && preview == that.preview;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = x;
+        result = 31 * result + y;
+        result = 31 * result + width;
+        result = 31 * result + height;
+        result = 31 * result + windowType;
+        result = 31 * result + (preview ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AttachOptions{" +
+                "x=" + x +
+                ", y=" + y +
+                ", width=" + width +
+                ", height=" + height +
+                ", windowType=" + windowType +
+                ", preview=" + preview +
+                '}';
+    }
+}
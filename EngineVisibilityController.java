@@ -0,0 +1,266 @@
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Keeps wallpaper engine visibility in sync with host activity, so engine does not render off screen
+ * <p>
+ * Engine is visible while activity is resumed and its window has focus, hidden while activity is stopped
+ * While activity is started but paused or covered (dialog, notification shade) engine runs in reduced mode
+ * Time spent in every state is accumulated and recorded into WallpaperMetrics
+ * Must be used from UI thread
+ */
+public class EngineVisibilityController implements Application.ActivityLifecycleCallbacks, ViewTreeObserver.OnWindowFocusChangeListener {
+    /**
+     * Reduced mode keeps engine visible
+     */
+    public static final int REDUCED_NONE = 0;
+    /**
+     * Reduced mode keeps engine visible in ambient (low power) mode
+     */
+    public static final int REDUCED_AMBIENT = 1;
+    /**
+     * Reduced mode hides engine
+     */
+    public static final int REDUCED_HIDDEN = 2;
+
+    public static final int STATE_HIDDEN = 0;
+    public static final int STATE_REDUCED = 1;
+    public static final int STATE_VISIBLE = 2;
+
+    private final Activity activity;
+    private final View decorView;
+    private WallpaperConnection wallpaperConnection;
+    private int reducedMode = REDUCED_AMBIENT;
+    private boolean started = true;
+    private boolean resumed = true;
+    private boolean focused;
+    private boolean registered;
+    private int state = STATE_HIDDEN;
+    private long stateStart;
+    private long visibleTime;
+    private long reducedTime;
+    private long hiddenTime;
+
+    /**
+     * Constructor for Engine Visibility Controller, activity is assumed to be resumed until lifecycle says otherwise
+     * Focus of window which is not attached yet is unknown and assumed, so new controller starts visible
+     * and engine does not receive ambient mode before first focus callback
+     *
+     * @param activity Host activity which window shows wallpaper
+     */
+    public EngineVisibilityController(Activity activity) {
+        this.activity = activity;
+        this.decorView = activity.getWindow().getDecorView();
+        this.focused = !decorView.isAttachedToWindow() || decorView.hasWindowFocus();
+    }
+
+    /**
+     * Start tracking activity lifecycle and window focus
+     */
+    public void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        activity.getApplication().registerActivityLifecycleCallbacks(this);
+        decorView.getViewTreeObserver().addOnWindowFocusChangeListener(this);
+        update();
+    }
+
+    /**
+     * Stop tracking, accumulated time is kept
+     */
+    public void unregister() {
+        if (!registered) {
+            return;
+        }
+        registered = false;
+        activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+        ViewTreeObserver viewTreeObserver = decorView.getViewTreeObserver();
+        if (viewTreeObserver.isAlive()) {
+            viewTreeObserver.removeOnWindowFocusChangeListener(this);
+        }
+        setConnection(null);
+    }
+
+    /**
+     * Set connection which engine visibility is controlled, current state applied immediately
+     *
+     * @param wallpaperConnection Active WallpaperConnection or null
+     */
+    public void setConnection(WallpaperConnection wallpaperConnection) {
+        if (this.wallpaperConnection == wallpaperConnection) {
+            apply(state);
+            return;
+        }
+        finishState();
+        this.wallpaperConnection = wallpaperConnection;
+        stateStart = SystemClock.elapsedRealtime();
+        apply(getTargetState());
+    }
+
+    /**
+     * Set behaviour of engine while activity is visible but not in foreground
+     *
+     * @param reducedMode REDUCED_NONE, REDUCED_AMBIENT or REDUCED_HIDDEN
+     */
+    public void setReducedMode(int reducedMode) {
+        this.reducedMode = reducedMode;
+        if (wallpaperConnection != null && state == STATE_REDUCED) {
+            apply(STATE_REDUCED);
+        }
+    }
+
+    public int getReducedMode() {
+        return reducedMode;
+    }
+
+    /**
+     * @return STATE_VISIBLE, STATE_REDUCED or STATE_HIDDEN
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return time in milliseconds engine was fully visible
+     */
+    public long getVisibleTime() {
+        return visibleTime + (wallpaperConnection != null && state == STATE_VISIBLE ? SystemClock.elapsedRealtime() - stateStart : 0);
+    }
+
+    /**
+     * @return time in milliseconds engine was in reduced mode
+     */
+    public long getReducedTime() {
+        return reducedTime + (wallpaperConnection != null && state == STATE_REDUCED ? SystemClock.elapsedRealtime() - stateStart : 0);
+    }
+
+    /**
+     * @return time in milliseconds engine was hidden while connected
+     */
+    public long getHiddenTime() {
+        return hiddenTime + (wallpaperConnection != null && state == STATE_HIDDEN ? SystemClock.elapsedRealtime() - stateStart : 0);
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasFocus) {
+        focused = hasFocus;
+        update();
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        if (activity == this.activity) {
+            started = true;
+            update();
+        }
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        if (activity == this.activity) {
+            resumed = true;
+            update();
+        }
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        if (activity == this.activity) {
+            resumed = false;
+            update();
+        }
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (activity == this.activity) {
+            started = false;
+            update();
+        }
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        if (activity == this.activity) {
+            started = false;
+            resumed = false;
+            update();
+        }
+    }
+
+    private int getTargetState() {
+        if (!started) {
+            return STATE_HIDDEN;
+        }
+        return resumed && focused ? STATE_VISIBLE : STATE_REDUCED;
+    }
+
+    private void update() {
+        int target = getTargetState();
+        if (target == state) {
+            return;
+        }
+        finishState();
+        stateStart = SystemClock.elapsedRealtime();
+        apply(target);
+    }
+
+    /**
+     * Accumulate time of current state, nothing is counted without connection
+     */
+    private void finishState() {
+        if (wallpaperConnection == null) {
+            return;
+        }
+        long duration = SystemClock.elapsedRealtime() - stateStart;
+        switch (state) {
+            case STATE_VISIBLE:
+                visibleTime += duration;
+                WallpaperMetrics.record(WallpaperMetrics.ENGINE_VISIBLE, duration * 1000000L);
+                break;
+            case STATE_REDUCED:
+                reducedTime += duration;
+                WallpaperMetrics.record(WallpaperMetrics.ENGINE_REDUCED, duration * 1000000L);
+                break;
+            default:
+                hiddenTime += duration;
+                WallpaperMetrics.record(WallpaperMetrics.ENGINE_HIDDEN, duration * 1000000L);
+                break;
+        }
+    }
+
+    private void apply(int state) {
+        this.state = state;
+        WallpaperConnection connection = wallpaperConnection;
+        if (connection == null) {
+            return;
+        }
+        switch (state) {
+            case STATE_VISIBLE:
+                connection.setAmbient(false);
+                connection.setVisible(true);
+                break;
+            case STATE_REDUCED:
+                connection.setAmbient(reducedMode == REDUCED_AMBIENT);
+                connection.setVisible(reducedMode != REDUCED_HIDDEN);
+                break;
+            default:
+                connection.setVisible(false);
+                break;
+        }
+    }
+}
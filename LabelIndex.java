@@ -0,0 +1,224 @@
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Sorted label index with precomputed collation keys
+ * <p>
+ * Every label resolved into CollationKey once on insert, so sorting and sorted insertion never compare strings
+ * Labels also stored folded (lower case, without diacritics) for locale-aware prefix and substring search
+ * Not thread-safe
+ *
+ * @param <T> Type of indexed values
+ */
+public class LabelIndex<T> {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Comparator<Entry<?>> ENTRY_COMPARATOR = new Comparator<Entry<?>>() {
+        @Override
+        public int compare(Entry<?> t1, Entry<?> t2) {
+            return t1.key.compareTo(t2.key);
+        }
+    };
+
+    private final Collator collator;
+    private final Locale locale;
+    private final List<Entry<T>> entries = new ArrayList<>();
+
+    /**
+     * Index for default locale
+     */
+    public LabelIndex() {
+        this(Locale.getDefault());
+    }
+
+    /**
+     * @param locale Locale for collation and search folding
+     */
+    public LabelIndex(Locale locale) {
+        this.locale = locale;
+        this.collator = Collator.getInstance(locale);
+    }
+
+    /**
+     * Insert value at sorted position, after all values with equal label
+     *
+     * @param label Label of value
+     * @param value Value
+     * @return index of inserted value
+     */
+    public int add(String label, T value) {
+        Entry<T> entry = createEntry(label, value);
+        int index = upperBound(entry.key);
+        entries.add(index, entry);
+        return index;
+    }
+
+    /**
+     * Add many values and sort them once, faster than add() for initial build
+     *
+     * @param labels Labels of values
+     * @param values Values in same order as labels
+     */
+    public void addAll(List<String> labels, List<T> values) {
+        for (int i = 0; i < values.size(); i++) {
+            entries.add(createEntry(labels.get(i), values.get(i)));
+        }
+        Collections.sort(entries, ENTRY_COMPARATOR);
+    }
+
+    /**
+     * Remove value at index
+     *
+     * @param index Index of value
+     * @return removed value
+     */
+    public T remove(int index) {
+        return entries.remove(index).value;
+    }
+
+    /**
+     * Replace value at index, label must have equal collation key
+     *
+     * @param index Index of value
+     * @param value New value
+     */
+    public void set(int index, T value) {
+        Entry<T> entry = entries.get(index);
+        entries.set(index, new Entry<>(entry.key, entry.folded, value));
+    }
+
+    public T get(int index) {
+        return entries.get(index).value;
+    }
+
+    public String getLabel(int index) {
+        return entries.get(index).key.getSourceString();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Query index of value
+     *
+     * @param value Value
+     * @return index or -1 if value is not indexed
+     */
+    public int indexOf(T value) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).value.equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check if label sorts equal with label at index
+     *
+     * @param index Index of value
+     * @param label Label to compare
+     * @return true if labels are equal by collator
+     */
+    public boolean isSameLabel(int index, String label) {
+        return collator.compare(entries.get(index).key.getSourceString(), label) == 0;
+    }
+
+    /**
+     * @return all values in sorted order
+     */
+    public List<T> values() {
+        List<T> values = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            values.add(entry.value);
+        }
+        return values;
+    }
+
+    /**
+     * Query values which label or any word of label starts with query, ignoring case and diacritics
+     *
+     * @param query Search query
+     * @return matching values in sorted order
+     */
+    public List<T> searchPrefix(String query) {
+        String foldedQuery = fold(query);
+        List<T> result = new ArrayList<>();
+        for (Entry<T> entry : entries) {
+            if (entry.folded.startsWith(foldedQuery) || entry.folded.contains(" " + foldedQuery)) {
+                result.add(entry.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Query values which label contains query, ignoring case and diacritics
+     *
+     * @param query Search query
+     * @return matching values in sorted order
+     */
+    public List<T> search(String query) {
+        String foldedQuery = fold(query);
+        List<T> result = new ArrayList<>();
+        for (Entry<T> entry : entries) {
+            if (entry.folded.contains(foldedQuery)) {
+                result.add(entry.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Binary search of first entry which key is greater than key
+     */
+    private int upperBound(CollationKey key) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).key.compareTo(key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private Entry<T> createEntry(String label, T value) {
+        String source = label != null ? label : "";
+        return new Entry<>(collator.getCollationKey(source), fold(source), value);
+    }
+
+    /**
+     * Fold string for search: decomposed, diacritics removed, lower case
+     */
+    private String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(locale);
+    }
+
+    private static class Entry<T> {
+        final CollationKey key;
+        final String folded;
+        final T value;
+
+        Entry(CollationKey key, String folded, T value) {
+            this.key = key;
+            this.folded = folded;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with power of two buckets of nanoseconds
+ * <p>
+ * Recording is a few atomic increments, so it can stay enabled on hot paths
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record single sample
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long currentMax;
+        while (nanos > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reset all samples
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Take snapshot of current samples, snapshot may be slightly inconsistent while samples are recorded
+     *
+     * @return histogram snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(name, counts, count.get(), sum.get(), max.get());
+    }
+
+    /**
+     * Immutable histogram snapshot, percentiles reported as upper bound of bucket
+     */
+    public static class Snapshot {
+        public final String name;
+        public final long count;
+        public final long sum;
+        public final long max;
+        private final long[] buckets;
+
+        Snapshot(String name, long[] buckets, long count, long sum, long max) {
+            this.name = name;
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * @return mean duration in nanoseconds
+         */
+        public long getMean() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        /**
+         * Query approximate percentile
+         *
+         * @param percentile Percentile from 0 to 100
+         * @return duration in nanoseconds
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile / 100d);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(max, (1L << i) - 1);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{" +
+                    "count=" + count +
+                    ", mean=" + getMean() / 1000 + "us" +
+                    ", p50=" + getPercentile(50) / 1000 + "us" +
+                    ", p90=" + getPercentile(90) / 1000 + "us" +
+                    ", p99=" + getPercentile(99) / 1000 + "us" +
+                    ", max=" + max / 1000 + "us" +
+                    '}';
+        }
+    }
+}
@@ -1,70 +1,112 @@
 import android.app.WallpaperInfo;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
-import android.graphics.drawable.Drawable;
+import android.content.pm.ResolveInfo;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
 
 /**
  * Holder object for WallpaperLoader
  * <p>
+ * Immutable view of WallpaperEntry, heavy objects are built only when requested:
+ * WallpaperInfo parsed once and cached, intents created on every call so callers can modify them
+ * <p>
  * Created by Line'R (seriniti320@gmail.com) 19.07.2020
  */
 public class LiveWallpaperItem {
-    public String name;
-    public Drawable preview;
-    public WallpaperInfo wallpaperInfo;
-    public Intent intent;
-    public Intent configIntent;
+    private final Context context;
+    private final WallpaperEntry entry;
+    private volatile WallpaperInfo wallpaperInfo;
+    private volatile WallpaperPreview preview;
 
-    public LiveWallpaperItem() {
+    /**
+     * Constructor for Live Wallpaper Item
+     *
+     * @param context Application context, used for building WallpaperInfo and preview
+     * @param entry   Catalog entry, for example received from another process
+     */
+    public LiveWallpaperItem(Context context, WallpaperEntry entry) {
+        this.context = context.getApplicationContext();
+        this.entry = entry;
     }
 
-    public String getName() {
-        return name;
+    /**
+     * @return compact catalog entry of item, can be parceled or written with WallpaperEntry.writeList()
+     */
+    public WallpaperEntry getEntry() {
+        return entry;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public String getName() {
+        return entry.getLabel();
     }
 
-    public Drawable getPreview() {
-        return preview;
+    /**
+     * @return new ComponentName of wallpaper service
+     */
+    public ComponentName getComponent() {
+        return entry.getComponent();
     }
 
-    public void setPreview(Drawable preview) {
-        this.preview = preview;
+    /**
+     * Query preview handle, preview will be decoded only on WallpaperPreview.getBitmap()
+     *
+     * @return preview handle or null if wallpaper has no preview
+     */
+    public WallpaperPreview getPreview() {
+        WallpaperPreview preview = this.preview;
+        if (preview == null && entry.getPreviewId() != 0) {
+            preview = entry.createPreview(context);
+            this.preview = preview;
+        }
+        return preview;
     }
 
+    /**
+     * Query WallpaperInfo of item, service resolved and parsed only on first request
+     * ResolveInfo is not kept, so loaded catalog does not hold PackageManager objects
+     * First call queries PackageManager and parses wallpaper XML of foreign package, make it off main thread
+     * as WallpaperPreview does, applying wallpaper does not need it, see LiveWallpaperManager.setWallpaper(LiveWallpaperItem)
+     *
+     * @return WallpaperInfo or null if it can not be parsed
+     */
     public WallpaperInfo getWallpaperInfo() {
+        WallpaperInfo wallpaperInfo = this.wallpaperInfo;
+        if (wallpaperInfo == null) {
+            ResolveInfo resolveInfo = entry.resolve(context.getPackageManager());
+            if (resolveInfo != null) {
+                try {
+                    wallpaperInfo = new WallpaperInfo(context, resolveInfo);
+                    this.wallpaperInfo = wallpaperInfo;
+                } catch (XmlPullParserException | IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
         return wallpaperInfo;
     }
 
-    public void setWallpaperInfo(WallpaperInfo wallpaperInfo) {
-        this.wallpaperInfo = wallpaperInfo;
-    }
-
+    /**
+     * @return new Intent of wallpaper service
+     */
     public Intent getIntent() {
-        return intent;
-    }
-
-    public void setIntent(Intent intent) {
-        this.intent = intent;
+        return entry.createIntent();
     }
 
+    /**
+     * @return new configuration Intent or null if wallpaper is not configurable
+     */
     public Intent getConfigIntent() {
-        return configIntent;
-    }
-
-    public void setConfigIntent(Intent configIntent) {
-        this.configIntent = configIntent;
+        return entry.createConfigIntent();
     }
 
     @Override
     public String toString() {
         return "LiveWallpaperItem{" +
-                "name='" + name + '\'' +
-                ", preview=" + preview +
-                ", wallpaperInfo=" + wallpaperInfo +
-                ", intent=" + intent +
-                ", configIntent=" + configIntent +
+                "entry=" + entry +
                 '}';
     }
 }
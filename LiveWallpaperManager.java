@@ -1,19 +1,20 @@
 import android.annotation.SuppressLint;
 import android.app.Activity;
-import android.app.IWallpaperManager;
+import android.app.Application;
 import android.app.WallpaperInfo;
 import android.app.WallpaperManager;
 import android.content.ComponentName;
-import android.content.Intent;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.RemoteException;
-import android.service.wallpaper.WallpaperService;
-import android.util.Log;
 import android.view.MotionEvent;
+import android.view.View;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Objects;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Live Wallpaper Manager class for setting Android Live Wallpaper programmatically without any permissions
@@ -40,81 +41,202 @@ public class LiveWallpaperManager {
     public static final String WATCHFACE_PREVIEW_CLOCKWORK_CIRCULAR = "com.google.android.clockwork.home.preview_circular";
 
 
-    private static LiveWallpaperManager liveWallpaperManager;
-    private WallpaperManager wallpaperManager;
-    private IWallpaperManager iWallpaperManager;
+    private static final long RETAIN_TIMEOUT = 5000;
+    private static final Map<Activity, LiveWallpaperManager> MANAGERS = new HashMap<>();
+    private static final Map<String, LiveWallpaperManager> RETAINED = new HashMap<>();
+    private final Runnable releaseRetained = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (MANAGERS) {
+                if (retainKey == null || RETAINED.get(retainKey) != LiveWallpaperManager.this) {
+                    return;
+                }
+            }
+            release();
+        }
+    };
+    private String retainKey;
+    private final Context context;
+    private final WallpaperManager wallpaperManager;
+    private final WallpaperBindings wallpaperBindings;
+    private final TouchForwarder touchForwarder;
+    private final OffsetForwarder offsetForwarder;
+    private final WallpaperConnectionManager connectionManager;
+    private final Handler dispatchHandler;
+    private final HostCallbacks hostCallbacks = new HostCallbacks();
+    private EngineVisibilityController visibilityController;
+    private int reducedMode = EngineVisibilityController.REDUCED_AMBIENT;
     private WallpaperConnection wallpaperConnection;
     private Activity activity;
     private IBinder windowToken;
 
     /**
-     * Internal constructor for Live Wallpaper Manager
+     * Internal constructor for Live Wallpaper Manager, does not touch activity window
      *
-     * @param activity MainActivity for correctly working manager
-     *                 {windowToken} uses for WallpaperConnection to bind Live Wallpaper into our application
-     *                 {wallpaperManager} uses for reflection and settings wallpaper offset
-     *                 {iWallpaperManager} private hidden service of {wallpaperManager} used in OS for applying Live Wallpapers
+     * @param context Application context
+     *                {wallpaperManager} uses for reflection and settings wallpaper offset
+     *                wallpaper services bound with application context, so engines survive activity recreation
      */
-    private LiveWallpaperManager(Activity activity) {
-        this.activity = activity;
-        this.windowToken = activity.getWindow().getDecorView().getWindowToken();
-        this.wallpaperManager = WallpaperManager.getInstance(activity);
-        try {
-            this.iWallpaperManager = (IWallpaperManager) invokeMethod(wallpaperManager, "getIWallpaperManager");
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            e.printStackTrace();
-        }
+    private LiveWallpaperManager(Context context) {
+        this.context = context;
+        this.wallpaperManager = WallpaperManager.getInstance(context);
+        this.wallpaperBindings = WallpaperBindings.getInstance(wallpaperManager);
+        this.touchForwarder = new TouchForwarder();
+        this.offsetForwarder = new OffsetForwarder(wallpaperManager, null);
+        this.connectionManager = new WallpaperConnectionManager(context, null);
+        this.dispatchHandler = new Handler(WallpaperThreads.getDispatchLooper());
     }
 
     /**
-     * Get instance of Live Wallpaper Manager
+     * Get instance of Live Wallpaper Manager scoped to host activity, safe to call from any thread
      * <p>
-     * IMPORTANT
-     * Need to be implemented in MainActivity class!
+     * Every activity instance has own manager, manager of activity recreated by configuration change
+     * is retained and handed to new instance of same class in same task, engines are moved to its window
+     * when window is attached, without rebinding wallpaper services
+     * Instance released automatically when host activity finished or retained manager is not claimed in time
      *
-     * @param activity MainActivity for correctly working manager
+     * @param activity Host activity which window shows wallpaper
      * @return instance of Live Wallpaper Manager
      */
-    public static LiveWallpaperManager getInstance(Activity activity) {
-        if (liveWallpaperManager == null)
-            return liveWallpaperManager = new LiveWallpaperManager(activity);
-        return liveWallpaperManager;
+    public static LiveWallpaperManager getInstance(final Activity activity) {
+        final LiveWallpaperManager manager;
+        synchronized (MANAGERS) {
+            LiveWallpaperManager existing = MANAGERS.get(activity);
+            if (existing == null) {
+                existing = RETAINED.remove(retainKey(activity));
+                if (existing != null) {
+                    existing.retainKey = null;
+                } else {
+                    existing = new LiveWallpaperManager(activity.getApplicationContext());
+                }
+                MANAGERS.put(activity, existing);
+            }
+            manager = existing;
+        }
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                manager.attachActivity(activity);
+            }
+        });
+        return manager;
+    }
+
+    /**
+     * Attach host activity, window token picked up once decor view is attached to window
+     */
+    private void attachActivity(Activity activity) {
+        if (this.activity == activity) {
+            return;
+        }
+        if (activity.isDestroyed()) {
+            release();
+            return;
+        }
+        detachActivity();
+        this.activity = activity;
+        activity.getApplication().registerActivityLifecycleCallbacks(hostCallbacks);
+        View decorView = activity.getWindow().getDecorView();
+        decorView.addOnAttachStateChangeListener(hostCallbacks);
+        visibilityController = new EngineVisibilityController(activity);
+        visibilityController.setReducedMode(reducedMode);
+        visibilityController.register();
+        visibilityController.setConnection(wallpaperConnection);
+        connectionManager.setHostActivity(activity);
+        if (decorView.isAttachedToWindow()) {
+            setWindowToken(decorView.getWindowToken());
+        }
+    }
+
+    /**
+     * Detach host activity, engines stay bound until new activity attached or manager released
+     */
+    private void detachActivity() {
+        if (activity == null) {
+            return;
+        }
+        activity.getApplication().unregisterActivityLifecycleCallbacks(hostCallbacks);
+        activity.getWindow().getDecorView().removeOnAttachStateChangeListener(hostCallbacks);
+        visibilityController.unregister();
+        visibilityController = null;
+        connectionManager.setHostActivity(null);
+        activity = null;
+        setWindowToken(null);
+    }
+
+    /**
+     * Keep manager of activity recreated by configuration change until new instance claims it in getInstance()
+     * Manager released if new instance does not claim it within RETAIN_TIMEOUT
+     */
+    private void retain(Activity activity) {
+        String key = retainKey(activity);
+        LiveWallpaperManager previous;
+        synchronized (MANAGERS) {
+            MANAGERS.remove(activity);
+            retainKey = key;
+            previous = RETAINED.put(key, this);
+        }
+        if (previous != null && previous != this) {
+            previous.release();
+        }
+        WallpaperThreads.getMainHandler().postDelayed(releaseRetained, RETAIN_TIMEOUT);
+    }
+
+    /**
+     * @return key of retained manager, recreated activity keeps its class and task
+     */
+    private static String retainKey(Activity activity) {
+        return activity.getTaskId() + ":" + activity.getClass().getName();
+    }
+
+    /**
+     * Move engines and offsets to window of host activity
+     */
+    private void setWindowToken(IBinder windowToken) {
+        if (this.windowToken == windowToken) {
+            return;
+        }
+        this.windowToken = windowToken;
+        connectionManager.setWindowToken(windowToken);
+        offsetForwarder.setWindowToken(windowToken);
     }
 
     /**
      * This method used for access hidden Android API in WindowManager
+     * Methods resolved once and cached by WallpaperBindings
      *
      * @param wallpaperManager WindowManager to handle private hidden methods
      * @param methodName       Method name for execution
      * @return Result of execution
-     * @throws InvocationTargetException throws when result mismatch with required type
-     * @throws IllegalAccessException    throws when some argument are wrong
+     * @throws InvocationTargetException     throws when result mismatch with required type
+     * @throws IllegalAccessException        throws when some argument are wrong
+     * @throws UnsupportedOperationException throws when method not exists on this platform
      */
     public static Object invokeMethod(WallpaperManager wallpaperManager, String methodName) throws InvocationTargetException, IllegalAccessException {
-        Object object = new Object();
-        Method[] methods = wallpaperManager.getClass().getDeclaredMethods();
-        for (Method method : methods) {
-            if (method.getName().equalsIgnoreCase(methodName)) {
-                return method.invoke(wallpaperManager);
-            }
+        Method method = WallpaperBindings.findMethod(wallpaperManager.getClass(), methodName);
+        if (method == null) {
+            throw new UnsupportedOperationException("Method " + methodName + " not found in " + wallpaperManager.getClass().getName());
         }
-        return object;
+        return method.invoke(wallpaperManager);
+    }
+
+    /**
+     * This method using for check if hidden wallpaper API available on this platform
+     *
+     * @return true if wallpaper can be applied
+     */
+    public boolean isSupported() {
+        return wallpaperBindings.isAvailable();
     }
 
     /**
      * This method using for settings Live Wallpaper for WallpaperConnection
+     * Only component of item used, WallpaperInfo of item is not parsed, so it is safe to call from UI thread
      *
      * @param liveWallpaperItem LiveWallpaperItem object from Wallpaper loader
      */
     public void setWallpaper(LiveWallpaperItem liveWallpaperItem){
-        try {
-            Method getIWallpaperManager = wallpaperManager.getClass().getMethod("getIWallpaperManager");
-            Object iWallpaperManager = getIWallpaperManager.invoke(wallpaperManager);
-            Method setWallpaperComponent = Objects.requireNonNull(iWallpaperManager).getClass().getMethod("setWallpaperComponent", ComponentName.class);
-            setWallpaperComponent.invoke(iWallpaperManager, liveWallpaperItem.getIntent().getComponent());
-        } catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-            Log.e(TAG, "Error while applying wallpaper, reason: "+e);
-        }
+        setWallpaper(liveWallpaperItem.getComponent());
     }
 
     /**
@@ -123,22 +245,175 @@ public class LiveWallpaperManager {
      * @param wallpaper WallpaperInfo using to get all required fields for applying
      */
     public void setWallpaper(WallpaperInfo wallpaper) {
-        Intent wallpaperServiceIntent = new Intent(WallpaperService.SERVICE_INTERFACE);
-        wallpaperServiceIntent.setClassName(wallpaper.getPackageName(), wallpaper.getServiceName());
-        wallpaperConnection = new WallpaperConnection(activity, wallpaperServiceIntent, windowToken);
-        if (iWallpaperManager != null) {
-            try {
-                iWallpaperManager.setWallpaperComponent(wallpaperServiceIntent.getComponent());
-                wallpaperManager.setWallpaperOffsetSteps(0, 0);
-                if (!wallpaperConnection.connect()) {
-                    wallpaperConnection.wallpaperEngine.setVisibility(true);
+        setWallpaper(new ComponentName(wallpaper.getPackageName(), wallpaper.getServiceName()));
+    }
+
+    /**
+     * This method using for settings Live Wallpaper for WallpaperConnection
+     *
+     * @param componentName Wallpaper service component
+     */
+    public void setWallpaper(ComponentName componentName) {
+        if (wallpaperBindings.setWallpaperComponent(componentName, context.getPackageName())) {
+            offsetForwarder.applySteps();
+            wallpaperConnection = connectionManager.apply(componentName);
+            touchForwarder.setConnection(wallpaperConnection);
+            setVisibilityConnection(wallpaperConnection);
+        }
+    }
+
+    /**
+     * This method using for settings Live Wallpaper asynchronously, caller thread never blocked
+     *
+     * @param liveWallpaperItem LiveWallpaperItem object from Wallpaper loader
+     * @param callback          Callback called on main thread when engine shown or apply failed
+     * @return pending apply request which can be cancelled
+     */
+    public ApplyRequest setWallpaperAsync(LiveWallpaperItem liveWallpaperItem, ApplyRequest.IApplyCallback callback) {
+        return setWallpaperAsync(liveWallpaperItem.getComponent(), ApplyRequest.DEFAULT_TIMEOUT, callback);
+    }
+
+    /**
+     * This method using for settings Live Wallpaper asynchronously, caller thread never blocked
+     * System wallpaper component applied on dispatch thread, wallpaper service bound on main thread
+     *
+     * @param componentName Wallpaper service component
+     * @param timeout       Maximum time in milliseconds to wait until engine shown
+     * @param callback      Callback called on main thread when engine shown or apply failed
+     * @return pending apply request which can be cancelled
+     */
+    public ApplyRequest setWallpaperAsync(final ComponentName componentName, long timeout, ApplyRequest.IApplyCallback callback) {
+        final ApplyRequest applyRequest = new ApplyRequest(componentName, callback);
+        final String packageName = context.getPackageName();
+        applyRequest.start(timeout);
+        dispatchHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (applyRequest.isDone()) {
+                    return;
+                }
+                if (!wallpaperBindings.setWallpaperComponent(componentName, packageName)) {
+                    String reason = wallpaperBindings.getUnavailableReason();
+                    applyRequest.fail(reason != null ? reason : "setWallpaperComponent failed");
+                    return;
                 }
-            } catch (RemoteException e) {
-                Log.e(TAG, "Error while applying wallpaper, reason: "+e);
+                offsetForwarder.applySteps();
+                WallpaperThreads.getMainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (applyRequest.isDone()) {
+                            return;
+                        }
+                        WallpaperConnection connection = connectionManager.apply(componentName);
+                        if (connection == null) {
+                            applyRequest.fail("Unable to bind wallpaper service");
+                            return;
+                        }
+                        wallpaperConnection = connection;
+                        touchForwarder.setConnection(connection);
+                        setVisibilityConnection(connection);
+                        applyRequest.attach(connection);
+                    }
+                });
             }
+        });
+        return applyRequest;
+    }
+
+    /**
+     * This method using for show Live Wallpaper over preview card without applying it as system wallpaper
+     * Engine attached to own window sized to card, so it renders at card resolution
+     *
+     * @param liveWallpaperItem LiveWallpaperItem object from Wallpaper loader
+     * @param previewCard       Laid out view of host activity where preview is shown
+     * @return preview connection or null if service can not be bound
+     */
+    public WallpaperConnection previewWallpaper(LiveWallpaperItem liveWallpaperItem, View previewCard) {
+        int[] location = new int[2];
+        previewCard.getLocationInWindow(location);
+        return previewWallpaper(liveWallpaperItem, AttachOptions.preview(location[0], location[1], previewCard.getWidth(), previewCard.getHeight()));
+    }
+
+    /**
+     * This method using for show Live Wallpaper in host activity without applying it as system wallpaper
+     * Engine runs with preview attach options, for example AttachOptions.preview(0.25f), in own window of preview size
+     * Applying wallpaper later binds new full screen engine and unbinds preview engine
+     *
+     * @param liveWallpaperItem LiveWallpaperItem object from Wallpaper loader
+     * @param attachOptions     Attach options of preview engine
+     * @return preview connection or null if service can not be bound
+     */
+    public WallpaperConnection previewWallpaper(LiveWallpaperItem liveWallpaperItem, AttachOptions attachOptions) {
+        WallpaperConnection connection = connectionManager.apply(liveWallpaperItem.getComponent(), attachOptions);
+        if (connection != null) {
+            wallpaperConnection = connection;
+            touchForwarder.setConnection(connection);
+            setVisibilityConnection(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * This method using for prepare Live Wallpaper which will be probably applied next
+     * Wallpaper engine bound invisible, so applying it later only shows it
+     *
+     * @param liveWallpaperItem LiveWallpaperItem object from Wallpaper loader
+     */
+    public void prewarmWallpaper(LiveWallpaperItem liveWallpaperItem) {
+        connectionManager.prewarm(liveWallpaperItem.getComponent());
+    }
+
+    /**
+     * This method using for prepare preview of Live Wallpaper which will be probably shown next in picker
+     *
+     * @param liveWallpaperItem LiveWallpaperItem object from Wallpaper loader
+     * @param attachOptions     Attach options of preview engine, same as passed to previewWallpaper()
+     */
+    public void prewarmWallpaper(LiveWallpaperItem liveWallpaperItem, AttachOptions attachOptions) {
+        connectionManager.prewarm(liveWallpaperItem.getComponent(), attachOptions);
+    }
+
+    /**
+     * This method using for tear down all wallpaper engines and scope of manager
+     * Called automatically when host activity finished, next getInstance() creates new manager
+     */
+    public void release() {
+        synchronized (MANAGERS) {
+            MANAGERS.values().remove(this);
+            if (retainKey != null && RETAINED.get(retainKey) == this) {
+                RETAINED.remove(retainKey);
+            }
+            retainKey = null;
+        }
+        WallpaperThreads.getMainHandler().removeCallbacks(releaseRetained);
+        detachActivity();
+        touchForwarder.release();
+        offsetForwarder.release();
+        connectionManager.release();
+        wallpaperConnection = null;
+    }
+
+    /**
+     * This method using for choose engine behaviour while host activity is visible but not in foreground
+     * Engine is always hidden while activity is stopped
+     *
+     * @param reducedMode EngineVisibilityController.REDUCED_NONE, REDUCED_AMBIENT or REDUCED_HIDDEN
+     */
+    public void setReducedMode(int reducedMode) {
+        this.reducedMode = reducedMode;
+        if (visibilityController != null) {
+            visibilityController.setReducedMode(reducedMode);
         }
     }
 
+    /**
+     * This method using for query visible, reduced and hidden time of wallpaper engine
+     *
+     * @return visibility controller of host activity or null if no activity attached
+     */
+    public EngineVisibilityController getVisibilityController() {
+        return visibilityController;
+    }
 
     /**
      * This method using for check active live wallpaper
@@ -148,28 +423,100 @@ public class LiveWallpaperManager {
         return wallpaperManager != null && wallpaperManager.getWallpaperInfo() != null;
     }
 
+    /**
+     * This method using for configure parallax of multi-page launcher, applied wallpaper receives page steps
+     *
+     * @param pagesX Count of horizontal pages
+     * @param pagesY Count of vertical pages
+     */
+    public void setPageCount(int pagesX, int pagesY) {
+        offsetForwarder.setPageCount(pagesX, pagesY);
+    }
+
+    /**
+     * This method using for send wallpaper offsets, can be called on every scroll callback
+     * Only latest offsets sent, at most once per frame and not on UI thread
+     *
+     * @param xOffset Horizontal offset from 0 to 1
+     * @param yOffset Vertical offset from 0 to 1
+     */
+    public void setWallpaperOffsets(float xOffset, float yOffset) {
+        offsetForwarder.setOffsets(xOffset, yOffset);
+    }
+
+    /**
+     * This method using for send wallpaper offsets by launcher page position, see setPageCount()
+     *
+     * @param pageX Horizontal page position, fractional while scrolling
+     * @param pageY Vertical page position, fractional while scrolling
+     */
+    public void setWallpaperPage(float pageX, float pageY) {
+        offsetForwarder.setPage(pageX, pageY);
+    }
+
     /**
      * This method uses to handle touch and send it to Android Wallpaper Service
+     * Moves merged to one dispatch per frame, binder calls done on dispatch thread
      */
     public void handleTouch(MotionEvent motionEvent) {
-        if (wallpaperConnection != null && wallpaperConnection.wallpaperEngine != null) {
-            MotionEvent historyEvent = MotionEvent.obtainNoHistory(motionEvent);
-            try {
-                wallpaperConnection.wallpaperEngine.dispatchPointer(historyEvent);
-                int eventAction = motionEvent.getAction();
-                switch (eventAction) {
-                    case MotionEvent.ACTION_UP:
-                        wallpaperConnection.wallpaperEngine.dispatchWallpaperCommand(WallpaperManager.COMMAND_TAP, Math.round(motionEvent.getX()), Math.round(motionEvent.getY()), 0, null);
-                        break;
-                    case MotionEvent.ACTION_POINTER_UP:
-                        int pointerIndex = motionEvent.getActionIndex();
-                        wallpaperConnection.wallpaperEngine.dispatchWallpaperCommand(WallpaperManager.COMMAND_TAP, Math.round(motionEvent.getX(pointerIndex)), Math.round(motionEvent.getY(pointerIndex)), 0, null);
-                        break;
-                    default:
-                        break;
-                }
-            } catch (RemoteException e) {
-                e.printStackTrace();
+        touchForwarder.forward(motionEvent);
+    }
+
+    private void setVisibilityConnection(WallpaperConnection connection) {
+        if (visibilityController != null) {
+            visibilityController.setConnection(connection);
+        }
+    }
+
+    /**
+     * Lifecycle of host activity and its window
+     * Recreated activity keeps engines bound, finished activity releases manager
+     */
+    private class HostCallbacks implements Application.ActivityLifecycleCallbacks, View.OnAttachStateChangeListener {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            setWindowToken(v.getWindowToken());
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            setWindowToken(null);
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            if (activity != LiveWallpaperManager.this.activity) {
+                return;
+            }
+            if (activity.isChangingConfigurations()) {
+                detachActivity();
+                retain(activity);
+            } else {
+                release();
             }
         }
     }
@@ -0,0 +1,149 @@
+import android.app.WallpaperManager;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Message;
+import android.view.Choreographer;
+
+/**
+ * Parallax offset pipeline from host launcher into wallpaper
+ * <p>
+ * Scroll positions accepted at any rate, merged to latest value and sent at most once per display frame
+ * setWallpaperOffsets() executed on dispatch thread, so scrolling never waits for window manager
+ * Can be created on any thread, must be used from UI thread
+ */
+public class OffsetForwarder implements Choreographer.FrameCallback, Handler.Callback {
+    private static final int MSG_OFFSETS = 1;
+
+    private final WallpaperManager wallpaperManager;
+    private final Handler dispatchHandler;
+    private volatile IBinder windowToken;
+    private volatile float xStep;
+    private volatile float yStep;
+    private float pendingX = -1;
+    private float pendingY = -1;
+    private float sentX = -1;
+    private float sentY = -1;
+    private boolean frameScheduled;
+
+    /**
+     * Constructor for Offset Forwarder
+     *
+     * @param wallpaperManager WallpaperManager which sends offsets
+     * @param windowToken      Window token of host window
+     */
+    public OffsetForwarder(WallpaperManager wallpaperManager, IBinder windowToken) {
+        this.wallpaperManager = wallpaperManager;
+        this.windowToken = windowToken;
+        this.dispatchHandler = new Handler(WallpaperThreads.getDispatchLooper(), this);
+    }
+
+    /**
+     * Set window token of host window, for example after window recreated
+     *
+     * @param windowToken Window token or null to stop sending offsets
+     */
+    public void setWindowToken(IBinder windowToken) {
+        this.windowToken = windowToken;
+        sentX = -1;
+        sentY = -1;
+        if (windowToken != null && pendingX >= 0) {
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Set count of launcher pages, wallpaper receives offset step between pages
+     *
+     * @param pagesX Count of horizontal pages, 1 or less for no steps
+     * @param pagesY Count of vertical pages, 1 or less for no steps
+     */
+    public void setPageCount(int pagesX, int pagesY) {
+        this.xStep = pagesX > 1 ? 1f / (pagesX - 1) : 0;
+        this.yStep = pagesY > 1 ? 1f / (pagesY - 1) : 0;
+        applySteps();
+    }
+
+    /**
+     * Apply configured page steps to WallpaperManager, steps are sent with next offsets
+     */
+    public void applySteps() {
+        wallpaperManager.setWallpaperOffsetSteps(xStep, yStep);
+    }
+
+    /**
+     * Set wallpaper offsets, latest value sent on next frame
+     *
+     * @param xOffset Horizontal offset from 0 (first page) to 1 (last page)
+     * @param yOffset Vertical offset from 0 (first page) to 1 (last page)
+     */
+    public void setOffsets(float xOffset, float yOffset) {
+        pendingX = clamp(xOffset);
+        pendingY = clamp(yOffset);
+        scheduleFrame();
+    }
+
+    /**
+     * Set wallpaper offsets by launcher page position
+     *
+     * @param pageX Horizontal page position, fractional while scrolling
+     * @param pageY Vertical page position, fractional while scrolling
+     */
+    public void setPage(float pageX, float pageY) {
+        setOffsets(xStep > 0 ? pageX * xStep : 0, yStep > 0 ? pageY * yStep : 0);
+    }
+
+    /**
+     * Drop pending offsets and stop frame callbacks
+     */
+    public void release() {
+        if (frameScheduled) {
+            WallpaperThreads.getChoreographer().removeFrameCallback(this);
+        }
+        frameScheduled = false;
+        dispatchHandler.removeMessages(MSG_OFFSETS);
+        pendingX = -1;
+        pendingY = -1;
+        sentX = -1;
+        sentY = -1;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (pendingX < 0 || windowToken == null || (pendingX == sentX && pendingY == sentY)) {
+            return;
+        }
+        sentX = pendingX;
+        sentY = pendingY;
+        dispatchHandler.removeMessages(MSG_OFFSETS);
+        dispatchHandler.obtainMessage(MSG_OFFSETS, Float.floatToIntBits(sentX), Float.floatToIntBits(sentY)).sendToTarget();
+    }
+
+    /**
+     * Dispatch thread, sends offsets to window manager
+     */
+    @Override
+    public boolean handleMessage(Message message) {
+        if (message.what != MSG_OFFSETS) {
+            return false;
+        }
+        IBinder token = windowToken;
+        if (token != null) {
+            long start = WallpaperMetrics.start();
+            wallpaperManager.setWallpaperOffsets(token, Float.intBitsToFloat(message.arg1), Float.intBitsToFloat(message.arg2));
+            WallpaperMetrics.stop(WallpaperMetrics.OFFSET_DISPATCH, start);
+        }
+        return true;
+    }
+
+    private void scheduleFrame() {
+        if (!frameScheduled) {
+            frameScheduled = true;
+            WallpaperThreads.getChoreographer().postFrameCallback(this);
+        }
+    }
+
+    private static float clamp(float offset) {
+        return Math.max(0, Math.min(1, offset));
+    }
+}
@@ -0,0 +1,142 @@
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of foreign package contexts, every package context created once and shared by all its services
+ * <p>
+ * Vendor packages often ship dozens of watch faces in one APK, so package context and assets are reused
+ * Contexts requested with package version are created again when package was updated
+ * Thread-safe
+ */
+public class PackageContextCache {
+    private final Context context;
+    private final int maxSize;
+    private final LinkedHashMap<String, Context> contexts = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> versions = new HashMap<>();
+    private int createdCount;
+
+    /**
+     * Constructor for Package Context Cache
+     *
+     * @param context Application context
+     * @param maxSize Maximum count of cached package contexts, least recently used dropped first, 0 for unbounded
+     */
+    public PackageContextCache(Context context, int maxSize) {
+        this.context = context;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Query context of package, created on first request
+     *
+     * @param packageName Package name
+     * @return package context or null if package not found
+     */
+    public synchronized Context get(String packageName) {
+        Context packageContext = contexts.get(packageName);
+        if (packageContext == null) {
+            packageContext = create(packageName);
+        }
+        return packageContext;
+    }
+
+    /**
+     * Query context of package version, context of other version is dropped and created again
+     *
+     * @param packageName Package name
+     * @param version     Package version (lastUpdateTime)
+     * @return package context or null if package not found
+     */
+    public synchronized Context get(String packageName, long version) {
+        Long cachedVersion = versions.get(packageName);
+        if (cachedVersion == null || cachedVersion != version) {
+            contexts.remove(packageName);
+        }
+        Context packageContext = get(packageName);
+        if (packageContext != null) {
+            versions.put(packageName, version);
+        }
+        return packageContext;
+    }
+
+    /**
+     * Query resources of package, created on first request
+     *
+     * @param packageName Package name
+     * @return package resources or null if package not found
+     */
+    public Resources getResources(String packageName) {
+        Context packageContext = get(packageName);
+        return packageContext != null ? packageContext.getResources() : null;
+    }
+
+    /**
+     * Query resources of package version, created again when package was updated
+     *
+     * @param packageName Package name
+     * @param version     Package version (lastUpdateTime)
+     * @return package resources or null if package not found
+     */
+    public Resources getResources(String packageName, long version) {
+        Context packageContext = get(packageName, version);
+        return packageContext != null ? packageContext.getResources() : null;
+    }
+
+    private Context create(String packageName) {
+        Context packageContext;
+        long start = WallpaperMetrics.start();
+        try {
+            packageContext = context.createPackageContext(packageName, Context.CONTEXT_IGNORE_SECURITY);
+        } catch (PackageManager.NameNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+        WallpaperMetrics.stop(WallpaperMetrics.LOAD_CONTEXT, start);
+        createdCount++;
+        contexts.put(packageName, packageContext);
+        trim();
+        return packageContext;
+    }
+
+    /**
+     * Drop cached context of package, for example when package was updated
+     *
+     * @param packageName Package name
+     */
+    public synchronized void remove(String packageName) {
+        contexts.remove(packageName);
+        versions.remove(packageName);
+    }
+
+    /**
+     * Drop all cached contexts
+     */
+    public synchronized void release() {
+        contexts.clear();
+        versions.clear();
+    }
+
+    /**
+     * @return count of package contexts created by this cache
+     */
+    public synchronized int getCreatedCount() {
+        return createdCount;
+    }
+
+    private void trim() {
+        if (maxSize <= 0) {
+            return;
+        }
+        Iterator<Map.Entry<String, Context>> iterator = contexts.entrySet().iterator();
+        while (contexts.size() > maxSize && iterator.hasNext()) {
+            versions.remove(iterator.next().getKey());
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Memory cache for decoded wallpaper previews bounded by bytes
+ * <p>
+ * Budget depends on device memory class and stays fixed no matter how many wallpapers are installed
+ */
+public class PreviewCache {
+    private static final int LOW_RAM_BUDGET = 4 * 1024 * 1024;
+    private static final int MAX_BUDGET = 32 * 1024 * 1024;
+    private static PreviewCache previewCache;
+    private final LruCache<String, Bitmap> cache;
+
+    /**
+     * Constructor for Preview Cache
+     *
+     * @param maxBytes Maximum size of all cached bitmaps in bytes
+     */
+    public PreviewCache(int maxBytes) {
+        this.cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Get shared instance of Preview Cache, budget calculated from device memory class
+     *
+     * @param context Application context
+     * @return instance of Preview Cache
+     */
+    public static synchronized PreviewCache getInstance(Context context) {
+        if (previewCache == null) {
+            previewCache = new PreviewCache(getDefaultBudget(context));
+        }
+        return previewCache;
+    }
+
+    /**
+     * Query default memory budget for previews
+     *
+     * @param context Application context
+     * @return budget in bytes, 1/8 of memory class or fixed small budget on low RAM devices
+     */
+    public static int getDefaultBudget(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager == null || activityManager.isLowRamDevice()) {
+            return LOW_RAM_BUDGET;
+        }
+        return Math.min(MAX_BUDGET, activityManager.getMemoryClass() * 1024 * 1024 / 8);
+    }
+
+    public Bitmap get(String key) {
+        return cache.get(key);
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        cache.put(key, bitmap);
+    }
+
+    /**
+     * Drop all cached previews, for example from onTrimMemory
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * @return size of cached bitmaps in bytes
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return memory budget in bytes
+     */
+    public int maxSize() {
+        return cache.maxSize();
+    }
+}
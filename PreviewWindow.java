@@ -0,0 +1,77 @@
+import android.app.Activity;
+import android.graphics.PixelFormat;
+import android.view.Gravity;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Transparent window of preview engine, placed and sized by preview AttachOptions of connection
+ * <p>
+ * Engine window attached as media overlay child of this window and fills it, so preview engine
+ * renders at preview size instead of display size. Window takes neither focus nor touches,
+ * host window keeps receiving them and forwards them through TouchForwarder
+ * Must be used from UI thread
+ */
+public class PreviewWindow implements View.OnAttachStateChangeListener {
+    private final WallpaperConnection wallpaperConnection;
+    private WindowManager windowManager;
+    private View view;
+
+    /**
+     * Constructor for Preview Window
+     *
+     * @param wallpaperConnection Connection of preview engine, receives window token of this window
+     */
+    public PreviewWindow(WallpaperConnection wallpaperConnection) {
+        this.wallpaperConnection = wallpaperConnection;
+    }
+
+    /**
+     * Add window to host activity, engine attached once window is attached
+     *
+     * @param activity Host activity
+     */
+    public void show(Activity activity) {
+        if (view != null) {
+            return;
+        }
+        AttachOptions attachOptions = wallpaperConnection.getAttachOptions();
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                attachOptions.getDesiredWidth(),
+                attachOptions.getDesiredHeight(),
+                attachOptions.getX(),
+                attachOptions.getY(),
+                WindowManager.LayoutParams.TYPE_APPLICATION,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE,
+                PixelFormat.TRANSLUCENT);
+        params.gravity = Gravity.TOP | Gravity.LEFT;
+        windowManager = activity.getWindowManager();
+        view = new View(activity);
+        view.addOnAttachStateChangeListener(this);
+        windowManager.addView(view, params);
+    }
+
+    /**
+     * Remove window, engine stays bound and is attached again on next show()
+     */
+    public void remove() {
+        if (view == null) {
+            return;
+        }
+        view.removeOnAttachStateChangeListener(this);
+        wallpaperConnection.setWindowToken(null);
+        windowManager.removeViewImmediate(view);
+        view = null;
+        windowManager = null;
+    }
+
+    @Override
+    public void onViewAttachedToWindow(View v) {
+        wallpaperConnection.setWindowToken(v.getWindowToken());
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(View v) {
+        wallpaperConnection.setWindowToken(null);
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent thumbnail store for wallpaper previews
+ * <p>
+ * Thumbnails stored as raw pixels in one append-only pack file, index stored in separate file
+ * Every thumbnail has version (package lastUpdateTime), thumbnail with other version is treated as missing
+ * Pack file is read through memory mapping, so reading thumbnail does not copy or decode anything
+ * Thumbnails of uninstalled packages removed by retain(), live thumbnails bounded by maximum pack size,
+ * oldest thumbnails (for example of sizes which are not requested anymore) evicted first
+ */
+public class ThumbnailStore {
+    private static final String PACK_FILE = "thumbnails.pack";
+    private static final String INDEX_FILE = "thumbnails.idx";
+    private static final int MIN_COMPACT_SIZE = 1024 * 1024;
+    private static final long DEFAULT_MAX_PACK_SIZE = 32 * 1024 * 1024;
+
+    private final File packFile;
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final long maxPackSize;
+    private long packSize;
+    private long staleSize;
+    private MappedByteBuffer mappedPack;
+
+    /**
+     * Open thumbnail store in directory with default size limit, index loaded immediately
+     *
+     * @param directory Directory for pack and index files
+     */
+    public ThumbnailStore(File directory) {
+        this(directory, DEFAULT_MAX_PACK_SIZE);
+    }
+
+    /**
+     * Open thumbnail store in directory, index loaded immediately
+     *
+     * @param directory   Directory for pack and index files
+     * @param maxPackSize Maximum size of live thumbnails in bytes
+     */
+    public ThumbnailStore(File directory, long maxPackSize) {
+        directory.mkdirs();
+        this.packFile = new File(directory, PACK_FILE);
+        this.indexFile = new File(directory, INDEX_FILE);
+        this.maxPackSize = maxPackSize;
+        readIndex();
+        maybeCompact();
+    }
+
+    /**
+     * Query stored thumbnail
+     *
+     * @param key     Thumbnail key
+     * @param version Expected version of thumbnail
+     * @return thumbnail which pixels are backed by mapped pack file, or null if missing or outdated
+     */
+    public synchronized Thumbnail get(String key, long version) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.version != version) {
+            return null;
+        }
+        MappedByteBuffer pack = map(entry.offset + entry.length);
+        if (pack == null) {
+            return null;
+        }
+        ByteBuffer pixels = pack.duplicate();
+        pixels.position((int) entry.offset);
+        pixels.limit((int) (entry.offset + entry.length));
+        return new Thumbnail(entry.width, entry.height, pixels.slice());
+    }
+
+    /**
+     * Append thumbnail into pack file, previous thumbnail with same key becomes stale
+     *
+     * @param key     Thumbnail key
+     * @param version Version of thumbnail
+     * @param width   Thumbnail width
+     * @param height  Thumbnail height
+     * @param pixels  Raw pixels, from position to limit
+     * @return true if thumbnail was stored
+     */
+    public synchronized boolean put(String key, long version, int width, int height, ByteBuffer pixels) {
+        int length = pixels.remaining();
+        long offset = packSize;
+        try (RandomAccessFile pack = new RandomAccessFile(packFile, "rw")) {
+            FileChannel channel = pack.getChannel();
+            channel.position(offset);
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        Entry entry = new Entry(key, version, offset, width, height, length);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)))) {
+            entry.write(out);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        packSize = offset + length;
+        add(entry);
+        if (packSize - staleSize > maxPackSize) {
+            evictOldest(maxPackSize * 3 / 4);
+        }
+        return true;
+    }
+
+    /**
+     * Remove thumbnails of packages which are not installed anymore, pack compacted when enough space is stale
+     * Thumbnail package is part of key before first ':'
+     *
+     * @param livePackages Installed package names
+     * @return count of removed thumbnails
+     */
+    public synchronized int retain(Set<String> livePackages) {
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!livePackages.contains(getPackageName(entry.key))) {
+                iterator.remove();
+                staleSize += entry.length;
+                removed++;
+            }
+        }
+        if (removed > 0 && !maybeCompact()) {
+            writeIndex();
+        }
+        return removed;
+    }
+
+    /**
+     * @return package names of stored thumbnails
+     */
+    public synchronized Set<String> getPackages() {
+        Set<String> packages = new HashSet<>();
+        for (String key : entries.keySet()) {
+            packages.add(getPackageName(key));
+        }
+        return packages;
+    }
+
+    /**
+     * Remove all thumbnails
+     */
+    public synchronized void clear() {
+        entries.clear();
+        mappedPack = null;
+        packSize = 0;
+        staleSize = 0;
+        packFile.delete();
+        indexFile.delete();
+    }
+
+    /**
+     * @return count of stored thumbnails
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return size of pack file in bytes, including stale thumbnails
+     */
+    public synchronized long getPackSize() {
+        return packSize;
+    }
+
+    /**
+     * Map pack file, mapping recreated only when pack file grows
+     */
+    private MappedByteBuffer map(long requiredSize) {
+        if (mappedPack != null && mappedPack.capacity() >= requiredSize) {
+            return mappedPack;
+        }
+        try (RandomAccessFile pack = new RandomAccessFile(packFile, "r")) {
+            mappedPack = pack.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, pack.length());
+        } catch (IOException e) {
+            e.printStackTrace();
+            mappedPack = null;
+        }
+        return mappedPack != null && mappedPack.capacity() >= requiredSize ? mappedPack : null;
+    }
+
+    private static String getPackageName(String key) {
+        int separator = key.indexOf(':');
+        return separator >= 0 ? key.substring(0, separator) : key;
+    }
+
+    /**
+     * Evict thumbnails in write order until live size fits, then compact pack
+     */
+    private void evictOldest(long targetSize) {
+        List<Entry> live = new ArrayList<>(entries.values());
+        Collections.sort(live, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry first, Entry second) {
+                return first.offset < second.offset ? -1 : (first.offset == second.offset ? 0 : 1);
+            }
+        });
+        long liveSize = packSize - staleSize;
+        for (Entry entry : live) {
+            if (liveSize <= targetSize) {
+                break;
+            }
+            entries.remove(entry.key);
+            staleSize += entry.length;
+            liveSize -= entry.length;
+        }
+        compact();
+    }
+
+    /**
+     * Compact pack when more than half of it is stale
+     *
+     * @return true if pack was compacted
+     */
+    private boolean maybeCompact() {
+        if (staleSize > MIN_COMPACT_SIZE && staleSize > packSize / 2) {
+            compact();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rewrite index file with live thumbnails only, pack file untouched
+     */
+    private void writeIndex() {
+        File newIndex = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newIndex)))) {
+            for (Entry entry : entries.values()) {
+                entry.write(index);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            newIndex.delete();
+            return;
+        }
+        if (!newIndex.renameTo(indexFile)) {
+            newIndex.delete();
+        }
+    }
+
+    private void add(Entry entry) {
+        Entry previous = entries.put(entry.key, entry);
+        if (previous != null) {
+            staleSize += previous.length;
+        }
+    }
+
+    /**
+     * Read index file, records which point outside of pack file are dropped
+     */
+    private void readIndex() {
+        long actualPackSize = packFile.length();
+        if (!indexFile.exists()) {
+            packFile.delete();
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            while (true) {
+                Entry entry = Entry.read(in);
+                if (entry.offset + entry.length > actualPackSize) {
+                    break;
+                }
+                add(entry);
+                packSize = Math.max(packSize, entry.offset + entry.length);
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        long liveSize = 0;
+        for (Entry entry : entries.values()) {
+            liveSize += entry.length;
+        }
+        staleSize = packSize - liveSize;
+    }
+
+    /**
+     * Rewrite pack and index files with live thumbnails only
+     */
+    private void compact() {
+        List<Entry> live = new ArrayList<>(entries.values());
+        File newPack = new File(packFile.getPath() + ".tmp");
+        File newIndex = new File(indexFile.getPath() + ".tmp");
+        List<Entry> moved = new ArrayList<>(live.size());
+        try (RandomAccessFile source = new RandomAccessFile(packFile, "r");
+             RandomAccessFile target = new RandomAccessFile(newPack, "rw");
+             DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newIndex)))) {
+            long offset = 0;
+            for (Entry entry : live) {
+                source.getChannel().transferTo(entry.offset, entry.length, target.getChannel());
+                Entry movedEntry = new Entry(entry.key, entry.version, offset, entry.width, entry.height, entry.length);
+                movedEntry.write(index);
+                moved.add(movedEntry);
+                offset += entry.length;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            newPack.delete();
+            newIndex.delete();
+            return;
+        }
+        if (!newPack.renameTo(packFile) || !newIndex.renameTo(indexFile)) {
+            clear();
+            return;
+        }
+        entries.clear();
+        packSize = 0;
+        staleSize = 0;
+        mappedPack = null;
+        for (Entry entry : moved) {
+            add(entry);
+            packSize = Math.max(packSize, entry.offset + entry.length);
+        }
+    }
+
+    /**
+     * Stored thumbnail, pixels buffer is read only
+     */
+    public static class Thumbnail {
+        public final int width;
+        public final int height;
+        public final ByteBuffer pixels;
+
+        Thumbnail(int width, int height, ByteBuffer pixels) {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Index record of thumbnail
+     */
+    private static class Entry {
+        final String key;
+        final long version;
+        final long offset;
+        final int width;
+        final int height;
+        final int length;
+
+        Entry(String key, long version, long offset, int width, int height, int length) {
+            this.key = key;
+            this.version = version;
+            this.offset = offset;
+            this.width = width;
+            this.height = height;
+            this.length = length;
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            return new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readInt());
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(key);
+            out.writeLong(version);
+            out.writeLong(offset);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(length);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import android.app.WallpaperManager;
+import android.os.Handler;
+import android.os.Message;
+import android.os.RemoteException;
+import android.service.wallpaper.IWallpaperEngine;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+
+/**
+ * Touch forwarding pipeline from host window into wallpaper engine
+ * <p>
+ * ACTION_MOVE events merged into at most one dispatch per display frame, all other events and tap
+ * commands dispatched in order. Binder calls executed on dispatch thread, events recycled after dispatch
+ * Events of preview engine translated from host window into preview window coordinates
+ * Can be created on any thread, must be used from UI thread
+ */
+public class TouchForwarder implements Choreographer.FrameCallback, Handler.Callback {
+    private static final int MSG_POINTER = 1;
+    private static final int MSG_TAP = 2;
+
+    private final Handler dispatchHandler;
+    private volatile WallpaperConnection wallpaperConnection;
+    private volatile int generation;
+    private MotionEvent pendingMove;
+    private boolean frameScheduled;
+
+    public TouchForwarder() {
+        this.dispatchHandler = new Handler(WallpaperThreads.getDispatchLooper(), this);
+    }
+
+    /**
+     * Set connection which engine receives touches
+     *
+     * @param wallpaperConnection Active WallpaperConnection or null to stop forwarding
+     */
+    public void setConnection(WallpaperConnection wallpaperConnection) {
+        this.wallpaperConnection = wallpaperConnection;
+    }
+
+    /**
+     * Forward touch event to wallpaper engine, event is copied so caller keeps ownership
+     *
+     * @param motionEvent Touch event from host window
+     */
+    public void forward(MotionEvent motionEvent) {
+        WallpaperConnection connection = wallpaperConnection;
+        if (connection == null || connection.getEngine() == null) {
+            return;
+        }
+        AttachOptions attachOptions = connection.getAttachOptions();
+        int offsetX = attachOptions.isFullScreen() ? 0 : -attachOptions.getX();
+        int offsetY = attachOptions.isFullScreen() ? 0 : -attachOptions.getY();
+        int action = motionEvent.getActionMasked();
+        if (action == MotionEvent.ACTION_MOVE) {
+            if (pendingMove != null) {
+                pendingMove.recycle();
+            }
+            pendingMove = obtain(motionEvent, offsetX, offsetY);
+            if (!frameScheduled) {
+                frameScheduled = true;
+                WallpaperThreads.getChoreographer().postFrameCallback(this);
+            }
+            return;
+        }
+        flushMove();
+        dispatchHandler.obtainMessage(MSG_POINTER, generation, 0, obtain(motionEvent, offsetX, offsetY)).sendToTarget();
+        switch (action) {
+            case MotionEvent.ACTION_UP:
+                dispatchHandler.obtainMessage(MSG_TAP, Math.round(motionEvent.getX()) + offsetX, Math.round(motionEvent.getY()) + offsetY).sendToTarget();
+                break;
+            case MotionEvent.ACTION_POINTER_UP:
+                int pointerIndex = motionEvent.getActionIndex();
+                dispatchHandler.obtainMessage(MSG_TAP, Math.round(motionEvent.getX(pointerIndex)) + offsetX, Math.round(motionEvent.getY(pointerIndex)) + offsetY).sendToTarget();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Copy event without history, moved by offset into engine window coordinates
+     */
+    private static MotionEvent obtain(MotionEvent motionEvent, int offsetX, int offsetY) {
+        MotionEvent copy = MotionEvent.obtainNoHistory(motionEvent);
+        if (offsetX != 0 || offsetY != 0) {
+            copy.offsetLocation(offsetX, offsetY);
+        }
+        return copy;
+    }
+
+    /**
+     * Drop pending events and stop frame callbacks
+     * Queued pointer events are not removed from dispatch queue, they are drained there and recycled without dispatch
+     */
+    public void release() {
+        if (frameScheduled) {
+            WallpaperThreads.getChoreographer().removeFrameCallback(this);
+        }
+        frameScheduled = false;
+        if (pendingMove != null) {
+            pendingMove.recycle();
+            pendingMove = null;
+        }
+        generation++;
+        dispatchHandler.removeMessages(MSG_TAP);
+        wallpaperConnection = null;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        flushMove();
+    }
+
+    /**
+     * Send latest merged ACTION_MOVE to dispatch thread
+     */
+    private void flushMove() {
+        if (pendingMove != null) {
+            dispatchHandler.obtainMessage(MSG_POINTER, generation, 0, pendingMove).sendToTarget();
+            pendingMove = null;
+        }
+    }
+
+    /**
+     * Dispatch thread, performs binder calls into wallpaper engine
+     */
+    @Override
+    public boolean handleMessage(Message message) {
+        WallpaperConnection connection = wallpaperConnection;
+        IWallpaperEngine engine = connection != null ? connection.getEngine() : null;
+        switch (message.what) {
+            case MSG_POINTER:
+                MotionEvent event = (MotionEvent) message.obj;
+                try {
+                    if (engine != null && message.arg1 == generation) {
+                        long start = WallpaperMetrics.start();
+                        engine.dispatchPointer(event);
+                        WallpaperMetrics.stop(WallpaperMetrics.TOUCH_POINTER, start);
+                    }
+                } catch (RemoteException e) {
+                    e.printStackTrace();
+                } finally {
+                    event.recycle();
+                }
+                return true;
+            case MSG_TAP:
+                try {
+                    if (engine != null) {
+                        long start = WallpaperMetrics.start();
+                        engine.dispatchWallpaperCommand(WallpaperManager.COMMAND_TAP, message.arg1, message.arg2, 0, null);
+                        WallpaperMetrics.stop(WallpaperMetrics.TOUCH_COMMAND, start);
+                    }
+                } catch (RemoteException e) {
+                    e.printStackTrace();
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+}
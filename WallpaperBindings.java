@@ -0,0 +1,193 @@
+import android.app.IWallpaperManager;
+import android.app.WallpaperInfo;
+import android.app.WallpaperManager;
+import android.content.ComponentName;
+import android.os.Process;
+import android.util.Log;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved bindings to hidden Android API used by Live Wallpaper Manager
+ * <p>
+ * All hidden methods resolved once per process, so applying wallpaper does not do any reflection lookups
+ * Availability of every binding probed on first use and can be queried before applying wallpaper
+ */
+public class WallpaperBindings {
+    public static final String TAG = WallpaperBindings.class.getSimpleName();
+
+    private static final int PER_USER_RANGE = 100000;
+    private static final Map<String, Method> METHOD_CACHE = new ConcurrentHashMap<>();
+    private static final Method MISSING;
+    private static WallpaperBindings wallpaperBindings;
+    private static volatile Field thumbnailResourceField;
+
+    static {
+        try {
+            MISSING = Object.class.getMethod("toString");
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private final IWallpaperManager iWallpaperManager;
+    private final Method setWallpaperComponent;
+    private final Method setWallpaperComponentChecked;
+    private final String unavailableReason;
+
+    /**
+     * Internal constructor, resolves and probes all bindings
+     *
+     * @param wallpaperManager WallpaperManager which holds hidden IWallpaperManager service
+     */
+    private WallpaperBindings(WallpaperManager wallpaperManager) {
+        IWallpaperManager service = null;
+        String reason = null;
+        Method getIWallpaperManager = findMethod(WallpaperManager.class, "getIWallpaperManager");
+        if (getIWallpaperManager == null) {
+            reason = "WallpaperManager.getIWallpaperManager() not found";
+        } else {
+            try {
+                service = (IWallpaperManager) getIWallpaperManager.invoke(wallpaperManager);
+            } catch (InvocationTargetException | IllegalAccessException | ClassCastException e) {
+                reason = "WallpaperManager.getIWallpaperManager() failed: " + e;
+            }
+        }
+        Method component = null;
+        Method componentChecked = null;
+        if (service != null) {
+            component = findMethod(service.getClass(), "setWallpaperComponent", ComponentName.class);
+            componentChecked = findMethod(service.getClass(), "setWallpaperComponentChecked", ComponentName.class, String.class, int.class);
+            if (component == null && componentChecked == null) {
+                reason = "IWallpaperManager.setWallpaperComponent() not found";
+            }
+        } else if (reason == null) {
+            reason = "IWallpaperManager service is null";
+        }
+        this.iWallpaperManager = service;
+        this.setWallpaperComponent = component;
+        this.setWallpaperComponentChecked = componentChecked;
+        this.unavailableReason = reason;
+        if (reason != null) {
+            Log.e(TAG, "Hidden wallpaper API unavailable, reason: " + reason);
+        }
+    }
+
+    /**
+     * Get instance of Wallpaper Bindings
+     *
+     * @param wallpaperManager WallpaperManager which holds hidden IWallpaperManager service
+     * @return resolved bindings
+     */
+    public static synchronized WallpaperBindings getInstance(WallpaperManager wallpaperManager) {
+        if (wallpaperBindings == null) {
+            wallpaperBindings = new WallpaperBindings(wallpaperManager);
+        }
+        return wallpaperBindings;
+    }
+
+    /**
+     * Find declared method in class or its superclasses, result cached including missing methods
+     *
+     * @param clazz          Class to search in
+     * @param methodName     Method name
+     * @param parameterTypes Method parameter types
+     * @return accessible method or null if method not exists
+     */
+    public static Method findMethod(Class<?> clazz, String methodName, Class<?>... parameterTypes) {
+        StringBuilder key = new StringBuilder(clazz.getName()).append('#').append(methodName);
+        for (Class<?> parameterType : parameterTypes) {
+            key.append(',').append(parameterType.getName());
+        }
+        Method method = METHOD_CACHE.get(key.toString());
+        if (method == null) {
+            method = MISSING;
+            for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+                try {
+                    method = current.getDeclaredMethod(methodName, parameterTypes);
+                    method.setAccessible(true);
+                    break;
+                } catch (NoSuchMethodException | SecurityException ignored) {
+                }
+            }
+            METHOD_CACHE.put(key.toString(), method);
+        }
+        return method != MISSING ? method : null;
+    }
+
+    /**
+     * Query thumbnail resource of plain live wallpaper, WallpaperInfo has no public getter for it
+     *
+     * @param wallpaperInfo Parsed WallpaperInfo
+     * @return thumbnail drawable resource id or 0 if wallpaper has no thumbnail
+     */
+    public static int getThumbnailResource(WallpaperInfo wallpaperInfo) {
+        Field field = thumbnailResourceField;
+        if (field == null) {
+            try {
+                field = WallpaperInfo.class.getDeclaredField("mThumbnailResource");
+                field.setAccessible(true);
+            } catch (NoSuchFieldException | SecurityException e) {
+                return 0;
+            }
+            thumbnailResourceField = field;
+        }
+        try {
+            return field.getInt(wallpaperInfo);
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return true if wallpaper component can be applied on this platform
+     */
+    public boolean isAvailable() {
+        return unavailableReason == null;
+    }
+
+    /**
+     * @return reason why bindings are unavailable or null if all bindings resolved
+     */
+    public String getUnavailableReason() {
+        return unavailableReason;
+    }
+
+    /**
+     * @return hidden IWallpaperManager service or null if unavailable
+     */
+    public IWallpaperManager getIWallpaperManager() {
+        return iWallpaperManager;
+    }
+
+    /**
+     * Apply wallpaper component through hidden IWallpaperManager service
+     *
+     * @param componentName  Wallpaper service component
+     * @param callingPackage Package name of calling application, used on platforms with setWallpaperComponentChecked
+     * @return true if component was applied, failure reason logged otherwise
+     */
+    public boolean setWallpaperComponent(ComponentName componentName, String callingPackage) {
+        if (!isAvailable()) {
+            Log.e(TAG, "Error while applying wallpaper, reason: " + unavailableReason);
+            return false;
+        }
+        try {
+            if (setWallpaperComponent != null) {
+                setWallpaperComponent.invoke(iWallpaperManager, componentName);
+            } else {
+                setWallpaperComponentChecked.invoke(iWallpaperManager, componentName, callingPackage, Process.myUid() / PER_USER_RANGE);
+            }
+            return true;
+        } catch (InvocationTargetException e) {
+            Log.e(TAG, "Error while applying wallpaper, reason: " + e.getCause());
+        } catch (IllegalAccessException e) {
+            Log.e(TAG, "Error while applying wallpaper, reason: " + e);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,333 @@
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.Handler;
+
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived in-memory wallpaper catalog kept sorted by name in LabelIndex
+ * <p>
+ * Catalog filled once by WallpaperLoader, after that only packages from package added/removed/replaced
+ * broadcasts are resolved again. Observers receive insert/remove/update deltas on main thread
+ * Broadcasts received while catalog is filled are held and replayed after load, so loader can not
+ * insert items of package which was removed or replaced meanwhile
+ * Must be used from main thread
+ */
+public class WallpaperCatalog {
+    private final Context context;
+    private final Handler mainHandler;
+    private final LabelIndex<LiveWallpaperItem> items = new LabelIndex<>();
+    private final CopyOnWriteArrayList<ICatalogObserver> observers = new CopyOnWriteArrayList<>();
+    private final WallpaperQuery wallpaperQuery;
+    private final WallpaperLoader packageLoader;
+    private ExecutorService executor;
+    private WallpaperLoader wallpaperLoader;
+    private Set<String> heldPackages;
+    private final BroadcastReceiver packageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName == null) {
+                return;
+            }
+            boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            String action = intent.getAction();
+            if (!Intent.ACTION_PACKAGE_ADDED.equals(action)) {
+                WallpaperPreview.getPackageContexts(context).remove(packageName);
+            }
+            if (heldPackages != null) {
+                heldPackages.add(packageName);
+            } else if (Intent.ACTION_PACKAGE_REMOVED.equals(action)) {
+                if (!replacing) {
+                    removePackage(packageName);
+                }
+            } else if (!Intent.ACTION_PACKAGE_ADDED.equals(action) || !replacing) {
+                reloadPackage(packageName);
+            }
+        }
+    };
+
+    /**
+     * Constructor for Wallpaper Catalog of watch faces
+     *
+     * @param context Application context
+     */
+    public WallpaperCatalog(Context context) {
+        this(context, WallpaperQuery.watchFaces());
+    }
+
+    /**
+     * Constructor for Wallpaper Catalog
+     *
+     * @param context        Application context
+     * @param wallpaperQuery Kind of wallpapers and filters of catalog
+     */
+    public WallpaperCatalog(Context context, WallpaperQuery wallpaperQuery) {
+        this.context = context.getApplicationContext();
+        this.wallpaperQuery = wallpaperQuery;
+        this.mainHandler = WallpaperThreads.getMainHandler();
+        this.packageLoader = new WallpaperLoader(this.context, wallpaperQuery, (WallpaperLoader.IWallpaperLoader) null);
+    }
+
+    /**
+     * Load catalog and start listening for package changes
+     */
+    public void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor();
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        heldPackages = new LinkedHashSet<>();
+        context.registerReceiver(packageReceiver, filter);
+        wallpaperLoader = new WallpaperLoader(context, wallpaperQuery, new WallpaperLoader.IWallpaperBatchLoader() {
+            @Override
+            public void onWallpapersLoaded(List<LiveWallpaperItem> liveWallpaperItems) {
+                for (LiveWallpaperItem liveWallpaperItem : liveWallpaperItems) {
+                    upsert(liveWallpaperItem);
+                }
+            }
+
+            @Override
+            public void onLoadFinished() {
+                replayHeldPackages();
+            }
+        });
+        wallpaperLoader.execute();
+    }
+
+    /**
+     * Stop listening for package changes, loaded items stay in catalog
+     */
+    public void stop() {
+        if (executor == null) {
+            return;
+        }
+        context.unregisterReceiver(packageReceiver);
+        wallpaperLoader.cancel(true);
+        wallpaperLoader = null;
+        heldPackages = null;
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * @return copy of current sorted items
+     */
+    public List<LiveWallpaperItem> getItems() {
+        return items.values();
+    }
+
+    /**
+     * Query compact entries of current items, for handing catalog to another process
+     * without running loader there, see WallpaperEntry.writeList()
+     *
+     * @return sorted entries
+     */
+    public List<WallpaperEntry> getEntries() {
+        List<WallpaperEntry> entries = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            entries.add(items.get(i).getEntry());
+        }
+        return entries;
+    }
+
+    /**
+     * Query items which name contains query, ignoring case and diacritics
+     *
+     * @param query Search query
+     * @return matching items in sorted order
+     */
+    public List<LiveWallpaperItem> search(String query) {
+        return items.search(query);
+    }
+
+    /**
+     * Query items which name or any word of name starts with query, ignoring case and diacritics
+     *
+     * @param query Search query
+     * @return matching items in sorted order
+     */
+    public List<LiveWallpaperItem> searchPrefix(String query) {
+        return items.searchPrefix(query);
+    }
+
+    /**
+     * @return count of items
+     */
+    public int size() {
+        return items.size();
+    }
+
+    public LiveWallpaperItem get(int index) {
+        return items.get(index);
+    }
+
+    public void addObserver(ICatalogObserver observer) {
+        observers.addIfAbsent(observer);
+    }
+
+    public void removeObserver(ICatalogObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Resolve again packages changed while catalog was filled, removed package resolves to no items
+     */
+    private void replayHeldPackages() {
+        Set<String> packages = heldPackages;
+        heldPackages = null;
+        if (packages == null) {
+            return;
+        }
+        for (String packageName : packages) {
+            reloadPackage(packageName);
+        }
+    }
+
+    /**
+     * Remove wallpapers of package, queued behind reloads already in flight so they can not insert removed items again
+     */
+    private void removePackage(final String packageName) {
+        if (executor == null) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (executor != null) {
+                            applyPackage(packageName, Collections.<LiveWallpaperItem>emptyList());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Resolve wallpapers of package on background thread and apply difference on main thread
+     * Package updates are serialized by single executor, so differences are applied in broadcast order
+     */
+    private void reloadPackage(final String packageName) {
+        if (executor == null) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<LiveWallpaperItem> packageItems = packageLoader.loadPackage(packageName);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (executor != null) {
+                            applyPackage(packageName, packageItems);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Replace all items of package with new items, observers receive only actual differences
+     *
+     * @param packageName  Package name
+     * @param packageItems Current wallpapers of package
+     */
+    private void applyPackage(String packageName, List<LiveWallpaperItem> packageItems) {
+        for (int i = items.size() - 1; i >= 0; i--) {
+            LiveWallpaperItem item = items.get(i);
+            WallpaperEntry entry = item.getEntry();
+            if (packageName.equals(entry.getPackageName()) && indexOf(packageItems, entry) < 0) {
+                items.remove(i);
+                for (ICatalogObserver observer : observers) {
+                    observer.onWallpaperRemoved(i, item);
+                }
+            }
+        }
+        for (LiveWallpaperItem item : packageItems) {
+            upsert(item);
+        }
+    }
+
+    /**
+     * Insert item in sorted position or update existing item with same component
+     * Item with equal entry keeps existing item, observers are not notified
+     */
+    private void upsert(LiveWallpaperItem item) {
+        int index = indexOf(item.getEntry());
+        if (index >= 0) {
+            LiveWallpaperItem previous = items.get(index);
+            if (previous.getEntry().equals(item.getEntry())) {
+                return;
+            }
+            if (items.isSameLabel(index, item.getName())) {
+                items.set(index, item);
+                for (ICatalogObserver observer : observers) {
+                    observer.onWallpaperChanged(index, item);
+                }
+                return;
+            }
+            items.remove(index);
+            for (ICatalogObserver observer : observers) {
+                observer.onWallpaperRemoved(index, previous);
+            }
+        }
+        index = items.add(item.getName(), item);
+        for (ICatalogObserver observer : observers) {
+            observer.onWallpaperInserted(index, item);
+        }
+    }
+
+    private int indexOf(WallpaperEntry entry) {
+        for (int i = 0; i < items.size(); i++) {
+            if (isSameComponent(entry, items.get(i).getEntry())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(List<LiveWallpaperItem> list, WallpaperEntry entry) {
+        for (int i = 0; i < list.size(); i++) {
+            if (isSameComponent(entry, list.get(i).getEntry())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSameComponent(WallpaperEntry first, WallpaperEntry second) {
+        return first.getServiceName().equals(second.getServiceName()) && first.getPackageName().equals(second.getPackageName());
+    }
+
+    /**
+     * ICatalogObserver interface for receive catalog changes, indexes are positions in sorted catalog
+     */
+    public interface ICatalogObserver {
+        void onWallpaperInserted(int index, LiveWallpaperItem liveWallpaperItem);
+
+        void onWallpaperRemoved(int index, LiveWallpaperItem liveWallpaperItem);
+
+        void onWallpaperChanged(int index, LiveWallpaperItem liveWallpaperItem);
+    }
+}
@@ -2,38 +2,100 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
-import android.content.res.Resources;
 import android.graphics.Rect;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import android.service.wallpaper.IWallpaperConnection;
 import android.service.wallpaper.IWallpaperEngine;
 import android.service.wallpaper.IWallpaperService;
+import android.util.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Wallpaper Connection Service for Live Wallpaper Manager
+ * <p>
+ * Connection is explicit state machine: idle -> binding -> attached -> visible, any bound state -> dead
+ * State and engine held in one atomic immutable snapshot, so binder threads and UI thread never lock
+ * and touch path reads engine with single volatile read
+ * Every engine binder linked to death, dead engine rebound automatically within bounded recovery time
+ * New window token reattaches engine through already bound service, service is not rebound
  *
  * Created by Line'R (seriniti320@gmail.com) 19.07.2020
  */
 public class WallpaperConnection extends IWallpaperConnection.Stub implements ServiceConnection {
-    IWallpaperService wallpaperService;
-    public IWallpaperEngine wallpaperEngine;
-    boolean connected;
+    public static final String TAG = WallpaperConnection.class.getSimpleName();
+    public static final String COMMAND_BACKGROUND_ACTION = "com.google.android.wearable.action.BACKGROUND_ACTION";
+    public static final String EXTRA_AMBIENT_MODE = "ambient_mode";
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_BINDING = 1;
+    public static final int STATE_ATTACHED = 2;
+    public static final int STATE_VISIBLE = 3;
+    public static final int STATE_DEAD = 4;
+    public static final int STATE_DISCONNECTED = 5;
+
+    private static final long RECOVERY_DELAY = 500;
+    private static final long RECOVERY_TIMEOUT = 2000;
+    private static final int MAX_RECOVERY_ATTEMPTS = 3;
+
+    private static final State IDLE = new State(STATE_IDLE, null, null);
+    private static final State BINDING = new State(STATE_BINDING, null, null);
+    private static final State DEAD = new State(STATE_DEAD, null, null);
+    private static final State DISCONNECTED = new State(STATE_DISCONNECTED, null, null);
+
+    private final AtomicReference<State> state = new AtomicReference<>(IDLE);
+    private final Handler mainHandler = WallpaperThreads.getMainHandler();
+    private final Runnable recoveryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            recover();
+        }
+    };
+    private volatile IWallpaperService wallpaperService;
+    private volatile boolean visible = true;
+    private volatile boolean ambient;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long bindStart;
+    private volatile long connectedStart;
+    private volatile long attachedStart;
+    private volatile long reattachStart;
+    private volatile long deathStart;
+    private volatile int recoveryAttempts;
     private Intent intent;
     private Context context;
-    private IBinder windowToken;
+    private volatile IBinder windowToken;
+    private volatile IBinder attachedToken;
+    private final AttachOptions attachOptions;
 
     /**
-     * Default constructor
+     * Default constructor, engine attached at display size
      * @param context Application context
      * @param intent Wallpaper Service Intent
      * @param windowToken IBinder to bind engine to Window
      */
     public WallpaperConnection(Context context, Intent intent, IBinder windowToken) {
+        this(context, intent, windowToken, AttachOptions.fullScreen());
+    }
+
+    /**
+     * Constructor with attach options, for example preview engine of picker
+     * @param context Application context
+     * @param intent Wallpaper Service Intent
+     * @param windowToken IBinder to bind engine to Window
+     * @param attachOptions Desired size, window type and preview mode of engine
+     */
+    public WallpaperConnection(Context context, Intent intent, IBinder windowToken, AttachOptions attachOptions) {
         this.intent = intent;
         this.context = context;
         this.windowToken = windowToken;
+        this.attachOptions = attachOptions;
     }
 
     /**
@@ -41,48 +103,185 @@ public class WallpaperConnection extends IWallpaperConnection.Stub implements Se
      * @return true if connection success
      */
     public boolean connect() {
-        synchronized (this) {
-            if (!context.bindService(intent, this, Context.BIND_AUTO_CREATE)) {
-                return false;
-            }
-            connected = true;
-            return true;
+        if (!state.compareAndSet(IDLE, BINDING)) {
+            return isConnected();
         }
+        bindStart = WallpaperMetrics.start();
+        if (!context.bindService(intent, this, Context.BIND_AUTO_CREATE)) {
+            state.compareAndSet(BINDING, IDLE);
+            return false;
+        }
+        return true;
     }
 
     /**
-     * UnBind Wallpaper Connection
+     * UnBind Wallpaper Connection, connection can not be connected again
      */
     public void disconnect() {
-        synchronized (this) {
-            connected = false;
-            if (wallpaperEngine != null) {
-                try {
-                    wallpaperEngine.destroy();
-                } catch (RemoteException e) {
-                    e.printStackTrace();
-                }
-                wallpaperEngine = null;
+        State previous = state.getAndSet(DISCONNECTED);
+        if (previous.phase == STATE_IDLE || previous.phase == STATE_DISCONNECTED) {
+            return;
+        }
+        mainHandler.removeCallbacks(recoveryRunnable);
+        destroyEngine(previous);
+        unbind();
+        wallpaperService = null;
+    }
+
+    /**
+     * Change visibility of wallpaper engine, applied on attach if engine is not attached yet
+     * @param visible true to show engine
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        IWallpaperEngine engine = getEngine();
+        if (engine != null) {
+            try {
+                engine.setVisibility(visible);
+            } catch (RemoteException e) {
+                e.printStackTrace();
             }
-            context.unbindService(this);
-            wallpaperService = null;
         }
     }
 
+    /**
+     * Switch wallpaper engine into ambient (low power) mode, applied on attach if engine is not attached yet
+     * Platform engines receive hidden setInAmbientMode(), watch faces receive background action command
+     * @param ambient true to enter ambient mode
+     */
+    public void setAmbient(boolean ambient) {
+        if (this.ambient == ambient) {
+            return;
+        }
+        this.ambient = ambient;
+        IWallpaperEngine engine = getEngine();
+        if (engine != null) {
+            dispatchAmbient(engine, ambient);
+        }
+    }
+
+    /**
+     * @return true if engine requested to be in ambient mode
+     */
+    public boolean isAmbient() {
+        return ambient;
+    }
+
+    /**
+     * @return true if engine requested to be visible
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * @return true if engine reported that it was shown
+     */
+    public boolean isShown() {
+        return state.get().phase == STATE_VISIBLE;
+    }
+
+    /**
+     * Query attached engine without locking, safe from any thread
+     * @return attached engine or null if engine is not attached or dead
+     */
+    public IWallpaperEngine getEngine() {
+        return state.get().engine;
+    }
+
+    /**
+     * @return STATE_IDLE, STATE_BINDING, STATE_ATTACHED, STATE_VISIBLE, STATE_DEAD or STATE_DISCONNECTED
+     */
+    public int getState() {
+        return state.get().phase;
+    }
+
+    /**
+     * Add listener for engine lifecycle events, called from binder threads
+     *
+     * @param listener Listener
+     */
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return true if service bound or dead engine is still being recovered
+     */
+    public boolean isConnected() {
+        int phase = state.get().phase;
+        return phase == STATE_BINDING || phase == STATE_ATTACHED || phase == STATE_VISIBLE
+                || phase == STATE_DEAD;
+    }
+
+    /**
+     * Move engine to new host window, for example after activity recreation
+     * Engine reattached through already bound service, so wallpaper service is not restarted
+     * Dead engine waiting for window is recovered once window token is set
+     * @param windowToken Window token of new host window or null while window is not attached
+     */
+    public void setWindowToken(IBinder windowToken) {
+        if (this.windowToken == windowToken) {
+            return;
+        }
+        this.windowToken = windowToken;
+        if (windowToken == null) {
+            return;
+        }
+        if (state.get().phase == STATE_DEAD) {
+            mainHandler.removeCallbacks(recoveryRunnable);
+            mainHandler.post(recoveryRunnable);
+        } else {
+            reattach();
+        }
+    }
+
+    /**
+     * @return window token engine is attached to or null
+     */
+    public IBinder getWindowToken() {
+        return windowToken;
+    }
+
+    /**
+     * @return attach options of engine
+     */
+    public AttachOptions getAttachOptions() {
+        return attachOptions;
+    }
+
+    /**
+     * @return Wallpaper service component of this connection
+     */
+    public ComponentName getComponent() {
+        return intent.getComponent();
+    }
+
     /**
      * This method called when WallpaperConnection attached to IWallpaperManager
+     * Also called when system restarts crashed wallpaper service
      * @param name Wallpaper ComponentName
      * @param service IBinder IWallpaperService
      */
     @Override
     public void onServiceConnected(ComponentName name, IBinder service) {
-        wallpaperService = IWallpaperService.Stub.asInterface(service);
-        try {
-            wallpaperService.attach(this, windowToken, 1004, true, Resources.getSystem().getDisplayMetrics().widthPixels, Resources.getSystem().getDisplayMetrics().heightPixels, new Rect(0, 0, 0, 0));
-        } catch (RemoteException e) {
-            e.printStackTrace();
+        State current = state.get();
+        if (current.phase != STATE_BINDING && !(current.phase == STATE_DEAD && state.compareAndSet(current, BINDING))) {
+            return;
         }
-
+        if (current.phase == STATE_DEAD) {
+            // Service restarted by system, pending recovery would attach second engine
+            mainHandler.removeCallbacks(recoveryRunnable);
+            mainHandler.postDelayed(recoveryRunnable, RECOVERY_TIMEOUT);
+        }
+        WallpaperMetrics.stop(WallpaperMetrics.BIND_CONNECTED, bindStart);
+        connectedStart = WallpaperMetrics.start();
+        wallpaperService = IWallpaperService.Stub.asInterface(service);
+        attach(wallpaperService);
     }
 
     /**
@@ -92,7 +291,7 @@ public class WallpaperConnection extends IWallpaperConnection.Stub implements Se
     @Override
     public void onServiceDisconnected(ComponentName name) {
         wallpaperService = null;
-        wallpaperEngine = null;
+        onDeath(null);
     }
 
     /**
@@ -101,21 +300,49 @@ public class WallpaperConnection extends IWallpaperConnection.Stub implements Se
      */
     @Override
     public void attachEngine(IWallpaperEngine engine) {
-        synchronized (this) {
-            if (connected) {
-                wallpaperEngine = engine;
-                try {
-                    engine.setVisibility(true);
-                } catch (RemoteException e) {
-                    e.printStackTrace();
-                }
-            } else {
-                try {
-                    engine.destroy();
-                } catch (RemoteException e) {
-                    e.printStackTrace();
-                }
+        State attached = new State(STATE_ATTACHED, engine, new EngineDeathRecipient(engine.asBinder()));
+        try {
+            engine.asBinder().linkToDeath(attached.deathRecipient, 0);
+        } catch (RemoteException e) {
+            if (state.compareAndSet(BINDING, DEAD)) {
+                onDead();
+            }
+            return;
+        }
+        if (!state.compareAndSet(BINDING, attached)) {
+            destroyEngine(attached);
+            return;
+        }
+        if (reattachStart == 0) {
+            WallpaperMetrics.stop(WallpaperMetrics.BIND_ATTACHED, connectedStart);
+        }
+        attachedStart = WallpaperMetrics.start();
+        if (deathStart != 0) {
+            WallpaperMetrics.stop(WallpaperMetrics.ENGINE_RECOVERY, deathStart);
+            deathStart = 0;
+        }
+        recoveryAttempts = 0;
+        mainHandler.removeCallbacks(recoveryRunnable);
+        try {
+            if (!attachOptions.isFullScreen()) {
+                engine.setDesiredSize(attachOptions.getDesiredWidth(), attachOptions.getDesiredHeight());
             }
+            boolean visible;
+            do {
+                visible = this.visible;
+                engine.setVisibility(visible);
+            } while (visible != this.visible);
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+        if (ambient) {
+            dispatchAmbient(engine, true);
+        }
+        for (Listener listener : listeners) {
+            listener.onEngineAttached(this);
+        }
+        if (attachedToken != windowToken) {
+            reattach();
         }
     }
 
@@ -131,9 +358,238 @@ public class WallpaperConnection extends IWallpaperConnection.Stub implements Se
 
     /**
      * Called when engine are visible
-     * @throws RemoteException
+     * @param engine Engine which was shown
      */
     @Override
     public void engineShown(IWallpaperEngine engine) {
+        State current = state.get();
+        if (current.phase == STATE_ATTACHED && current.isEngine(engine.asBinder())
+                && state.compareAndSet(current, new State(STATE_VISIBLE, current.engine, current.deathRecipient))) {
+            long reattachStart = this.reattachStart;
+            if (reattachStart != 0) {
+                WallpaperMetrics.stop(WallpaperMetrics.BIND_REATTACH, reattachStart);
+                this.reattachStart = 0;
+            } else {
+                WallpaperMetrics.stop(WallpaperMetrics.BIND_SHOWN, attachedStart);
+                WallpaperMetrics.stop(WallpaperMetrics.BIND_TOTAL, bindStart);
+            }
+        }
+        if (state.get().phase == STATE_VISIBLE) {
+            for (Listener listener : listeners) {
+                listener.onEngineShown(this);
+            }
+        }
+    }
+
+    /**
+     * Attach new engine through bound service
+     */
+    private void attach(IWallpaperService service) {
+        IBinder token = windowToken;
+        attachedToken = token;
+        if (token == null) {
+            return;
+        }
+        try {
+            service.attach(this, token, attachOptions.getWindowType(), attachOptions.isPreview(), attachOptions.getDesiredWidth(), attachOptions.getDesiredHeight(), new Rect(0, 0, 0, 0));
+        } catch (RemoteException e) {
+            e.printStackTrace();
+            onDeath(null);
+        }
+    }
+
+    /**
+     * Replace engine with engine attached to current window token
+     * Attach already in flight finishes first, its engine is replaced in attachEngine()
+     */
+    private void reattach() {
+        IWallpaperService service = wallpaperService;
+        if (service == null) {
+            return;
+        }
+        State current;
+        do {
+            current = state.get();
+            if (current.phase == STATE_BINDING && attachedToken != null) {
+                return;
+            }
+            if (current.phase != STATE_BINDING && current.phase != STATE_ATTACHED && current.phase != STATE_VISIBLE) {
+                return;
+            }
+        } while (!state.compareAndSet(current, BINDING));
+        destroyEngine(current);
+        if (current.engine != null) {
+            reattachStart = WallpaperMetrics.start();
+        }
+        attach(service);
+    }
+
+    /**
+     * Move live state to dead and schedule recovery, called from binder threads
+     * @param engineBinder Binder of died engine or null if whole service died
+     */
+    private void onDeath(IBinder engineBinder) {
+        State current;
+        do {
+            current = state.get();
+            if (current.phase != STATE_BINDING && current.phase != STATE_ATTACHED && current.phase != STATE_VISIBLE) {
+                return;
+            }
+            if (engineBinder != null && !current.isEngine(engineBinder)) {
+                return;
+            }
+        } while (!state.compareAndSet(current, DEAD));
+        if (current.deathRecipient != null) {
+            current.engine.asBinder().unlinkToDeath(current.deathRecipient, 0);
+        }
+        onDead();
+    }
+
+    /**
+     * Notify listeners and schedule recovery after state moved to dead
+     */
+    private void onDead() {
+        reattachStart = 0;
+        deathStart = WallpaperMetrics.start();
+        Log.w(TAG, "Wallpaper engine died " + getComponent());
+        for (Listener listener : listeners) {
+            listener.onEngineDied(this);
+        }
+        mainHandler.removeCallbacks(recoveryRunnable);
+        mainHandler.postDelayed(recoveryRunnable, RECOVERY_DELAY);
+    }
+
+    /**
+     * Main thread, rebind dead engine, repeated until engine attached or attempts exhausted
+     * System may restart crashed service itself, so engine may be already attached when it runs
+     * Exhausted connection is unbound and moved to disconnected, listeners get onRecoveryFailed()
+     * Without window token engine can not be attached, so connection waits dead and attempt is not counted
+     */
+    private void recover() {
+        State current = state.get();
+        if (current.phase != STATE_DEAD && current.phase != STATE_BINDING) {
+            return;
+        }
+        if (windowToken == null) {
+            state.compareAndSet(current, DEAD);
+            return;
+        }
+        if (recoveryAttempts >= MAX_RECOVERY_ATTEMPTS) {
+            if (!state.compareAndSet(current, DISCONNECTED)) {
+                return;
+            }
+            Log.e(TAG, "Unable to recover wallpaper engine " + getComponent() + " after " + recoveryAttempts + " attempts");
+            mainHandler.removeCallbacks(recoveryRunnable);
+            unbind();
+            wallpaperService = null;
+            for (Listener listener : listeners) {
+                listener.onRecoveryFailed(this);
+            }
+            return;
+        }
+        if (!state.compareAndSet(current, BINDING)) {
+            return;
+        }
+        recoveryAttempts++;
+        IWallpaperService service = wallpaperService;
+        if (service != null) {
+            attach(service);
+        } else {
+            unbind();
+            bindStart = WallpaperMetrics.start();
+            if (!context.bindService(intent, this, Context.BIND_AUTO_CREATE)) {
+                state.compareAndSet(BINDING, DEAD);
+            }
+        }
+        mainHandler.postDelayed(recoveryRunnable, RECOVERY_TIMEOUT);
+    }
+
+    private void destroyEngine(State previous) {
+        if (previous.engine == null) {
+            return;
+        }
+        previous.engine.asBinder().unlinkToDeath(previous.deathRecipient, 0);
+        try {
+            previous.engine.destroy();
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void unbind() {
+        try {
+            context.unbindService(this);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Wallpaper service was not bound " + getComponent());
+        }
+    }
+
+    /**
+     * Deliver ambient mode to engine, setInAmbientMode() signature differs between platform versions
+     */
+    private static void dispatchAmbient(IWallpaperEngine engine, boolean ambient) {
+        try {
+            Method setInAmbientMode = WallpaperBindings.findMethod(engine.getClass(), "setInAmbientMode", boolean.class, long.class);
+            if (setInAmbientMode != null) {
+                setInAmbientMode.invoke(engine, ambient, 0L);
+            } else if ((setInAmbientMode = WallpaperBindings.findMethod(engine.getClass(), "setInAmbientMode", boolean.class, boolean.class)) != null) {
+                setInAmbientMode.invoke(engine, ambient, false);
+            }
+            Bundle extras = new Bundle();
+            extras.putBoolean(EXTRA_AMBIENT_MODE, ambient);
+            engine.dispatchWallpaperCommand(COMMAND_BACKGROUND_ACTION, 0, 0, 0, extras);
+        } catch (RemoteException | IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    /**
+     * Immutable snapshot of connection state, replaced atomically on every transition
+     */
+    private static final class State {
+        final int phase;
+        final IWallpaperEngine engine;
+        final IBinder.DeathRecipient deathRecipient;
+
+        State(int phase, IWallpaperEngine engine, IBinder.DeathRecipient deathRecipient) {
+            this.phase = phase;
+            this.engine = engine;
+            this.deathRecipient = deathRecipient;
+        }
+
+        boolean isEngine(IBinder engineBinder) {
+            return engine != null && engine.asBinder() == engineBinder;
+        }
+    }
+
+    /**
+     * Death link of single engine binder
+     */
+    private class EngineDeathRecipient implements IBinder.DeathRecipient {
+        private final IBinder engineBinder;
+
+        EngineDeathRecipient(IBinder engineBinder) {
+            this.engineBinder = engineBinder;
+        }
+
+        @Override
+        public void binderDied() {
+            onDeath(engineBinder);
+        }
+    }
+
+    /**
+     * Listener for engine lifecycle events of WallpaperConnection
+     */
+    public interface Listener {
+        void onEngineAttached(WallpaperConnection connection);
+
+        void onEngineShown(WallpaperConnection connection);
+
+        void onEngineDied(WallpaperConnection connection);
+
+        void onRecoveryFailed(WallpaperConnection connection);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,210 @@
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+import android.service.wallpaper.WallpaperService;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Owner of active WallpaperConnection for Live Wallpaper Manager
+ * <p>
+ * Previous engine always torn down on switch, same component reuses active connection
+ * Next likely wallpaper can be prewarmed as bound invisible engine, so switching to it only changes visibility
+ * Connections with different AttachOptions are different engines, preview engine is not reused as full screen one
+ * Full screen engines attached to host window, preview engines to own PreviewWindow in host activity
+ * Must be used from UI thread
+ */
+public class WallpaperConnectionManager {
+    public static final String TAG = WallpaperConnectionManager.class.getSimpleName();
+    private final Context context;
+    private IBinder windowToken;
+    private Activity hostActivity;
+    private final Map<WallpaperConnection, PreviewWindow> previewWindows = new HashMap<>();
+    private WallpaperConnection activeConnection;
+    private WallpaperConnection prewarmedConnection;
+
+    /**
+     * Default constructor
+     * @param context Application context, services bound with it survive host activity recreation
+     * @param windowToken IBinder to bind engines to Window, may be null until window is attached
+     */
+    public WallpaperConnectionManager(Context context, IBinder windowToken) {
+        this.context = context;
+        this.windowToken = windowToken;
+    }
+
+    /**
+     * Show wallpaper component at display size, reusing active or prewarmed connection when possible
+     * @param componentName Wallpaper service component
+     * @return active connection or null if service can not be bound
+     */
+    public WallpaperConnection apply(ComponentName componentName) {
+        return apply(componentName, AttachOptions.fullScreen());
+    }
+
+    /**
+     * Show wallpaper component, reusing active or prewarmed connection with same attach options when possible
+     * Switching between preview and full screen options binds new connection and unbinds previous one
+     * @param componentName Wallpaper service component
+     * @param attachOptions Attach options of engine
+     * @return active connection or null if service can not be bound
+     */
+    public WallpaperConnection apply(ComponentName componentName, AttachOptions attachOptions) {
+        if (isConnectionOf(activeConnection, componentName, attachOptions)) {
+            activeConnection.setVisible(true);
+            return activeConnection;
+        }
+        WallpaperConnection connection;
+        if (isConnectionOf(prewarmedConnection, componentName, attachOptions)) {
+            connection = prewarmedConnection;
+            prewarmedConnection = null;
+            connection.setVisible(true);
+        } else {
+            connection = createConnection(componentName, attachOptions);
+            if (!connection.connect()) {
+                Log.e(TAG, "Error while binding wallpaper service " + componentName);
+                disconnect(connection);
+                return null;
+            }
+        }
+        WallpaperConnection previousConnection = activeConnection;
+        activeConnection = connection;
+        if (previousConnection != null) {
+            disconnect(previousConnection);
+        }
+        return connection;
+    }
+
+    /**
+     * Bind invisible engine for wallpaper which will be probably applied next, previous prewarmed engine torn down
+     * @param componentName Wallpaper service component
+     * @return true if engine is prewarmed or already active
+     */
+    public boolean prewarm(ComponentName componentName) {
+        return prewarm(componentName, AttachOptions.fullScreen());
+    }
+
+    /**
+     * Bind invisible engine with attach options, for example next preview in picker
+     * @param componentName Wallpaper service component
+     * @param attachOptions Attach options of engine
+     * @return true if engine is prewarmed or already active
+     */
+    public boolean prewarm(ComponentName componentName, AttachOptions attachOptions) {
+        if (isConnectionOf(activeConnection, componentName, attachOptions) || isConnectionOf(prewarmedConnection, componentName, attachOptions)) {
+            return true;
+        }
+        releasePrewarmed();
+        WallpaperConnection connection = createConnection(componentName, attachOptions);
+        connection.setVisible(false);
+        if (!connection.connect()) {
+            Log.e(TAG, "Error while prewarming wallpaper service " + componentName);
+            disconnect(connection);
+            return false;
+        }
+        prewarmedConnection = connection;
+        return true;
+    }
+
+    /**
+     * Tear down prewarmed engine if any
+     */
+    public void releasePrewarmed() {
+        if (prewarmedConnection != null) {
+            disconnect(prewarmedConnection);
+            prewarmedConnection = null;
+        }
+    }
+
+    /**
+     * Tear down all engines and unbind services
+     */
+    public void release() {
+        releasePrewarmed();
+        if (activeConnection != null) {
+            disconnect(activeConnection);
+            activeConnection = null;
+        }
+    }
+
+    /**
+     * Move full screen engines to new host window, services stay bound
+     * @param windowToken Window token of host window or null while window is not attached
+     */
+    public void setWindowToken(IBinder windowToken) {
+        this.windowToken = windowToken;
+        if (activeConnection != null && activeConnection.getAttachOptions().isFullScreen()) {
+            activeConnection.setWindowToken(windowToken);
+        }
+        if (prewarmedConnection != null && prewarmedConnection.getAttachOptions().isFullScreen()) {
+            prewarmedConnection.setWindowToken(windowToken);
+        }
+    }
+
+    /**
+     * Move preview windows to new host activity, services stay bound
+     * @param activity Host activity or null while no activity is attached
+     */
+    public void setHostActivity(Activity activity) {
+        if (hostActivity == activity) {
+            return;
+        }
+        for (PreviewWindow previewWindow : previewWindows.values()) {
+            previewWindow.remove();
+        }
+        hostActivity = activity;
+        if (activity != null) {
+            for (PreviewWindow previewWindow : previewWindows.values()) {
+                previewWindow.show(activity);
+            }
+        }
+    }
+
+    /**
+     * @return active connection or null
+     */
+    public WallpaperConnection getActiveConnection() {
+        return activeConnection;
+    }
+
+    /**
+     * @return prewarmed connection or null
+     */
+    public WallpaperConnection getPrewarmedConnection() {
+        return prewarmedConnection;
+    }
+
+    private WallpaperConnection createConnection(ComponentName componentName, AttachOptions attachOptions) {
+        Intent wallpaperServiceIntent = new Intent(WallpaperService.SERVICE_INTERFACE);
+        wallpaperServiceIntent.setComponent(componentName);
+        if (attachOptions.isFullScreen()) {
+            return new WallpaperConnection(context, wallpaperServiceIntent, windowToken, attachOptions);
+        }
+        WallpaperConnection connection = new WallpaperConnection(context, wallpaperServiceIntent, null, attachOptions);
+        PreviewWindow previewWindow = new PreviewWindow(connection);
+        previewWindows.put(connection, previewWindow);
+        if (hostActivity != null) {
+            previewWindow.show(hostActivity);
+        }
+        return connection;
+    }
+
+    /**
+     * Unbind connection and remove its preview window if any
+     */
+    private void disconnect(WallpaperConnection connection) {
+        PreviewWindow previewWindow = previewWindows.remove(connection);
+        if (previewWindow != null) {
+            previewWindow.remove();
+        }
+        connection.disconnect();
+    }
+
+    private static boolean isConnectionOf(WallpaperConnection connection, ComponentName componentName, AttachOptions attachOptions) {
+        return connection != null && connection.isConnected() && componentName.equals(connection.getComponent()) && attachOptions.equals(connection.getAttachOptions());
+    }
+}
@@ -0,0 +1,283 @@
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.service.wallpaper.WallpaperService;
+import android.service.wallpaper.WallpaperSettingsActivity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_CONFIG_INTENT;
+
+/**
+ * Compact immutable catalog entry of wallpaper service
+ * <p>
+ * Holds only names, label, preview resource id and package version, names are interned so entries of
+ * same package share strings. Intents, previews and WallpaperInfo are built from entry on demand
+ * Entry can be sent to another process as Parcelable, or whole catalog written in binary form with writeList()
+ */
+public final class WallpaperEntry implements Parcelable {
+    private static final int LIST_MAGIC = 0x4C57454E;
+    private static final int LIST_VERSION = 1;
+
+    private final String packageName;
+    private final String serviceName;
+    private final String label;
+    private final String configAction;
+    private final String settingsActivity;
+    private final int previewId;
+    private final long version;
+
+    /**
+     * Constructor for Wallpaper Entry
+     *
+     * @param packageName      Wallpaper package name
+     * @param serviceName      Wallpaper service class name
+     * @param label            Resolved label of service
+     * @param configAction     Watch face configuration action or empty string
+     * @param settingsActivity Wallpaper settings activity class name or empty string
+     * @param previewId        Preview drawable resource id in wallpaper package or 0
+     * @param version          Version of wallpaper package (lastUpdateTime)
+     */
+    public WallpaperEntry(String packageName, String serviceName, String label, String configAction, String settingsActivity, int previewId, long version) {
+        this.packageName = packageName.intern();
+        this.serviceName = serviceName.intern();
+        this.label = label != null ? label : "";
+        this.configAction = configAction != null ? configAction.intern() : "";
+        this.settingsActivity = settingsActivity != null ? settingsActivity.intern() : "";
+        this.previewId = previewId;
+        this.version = version;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getPreviewId() {
+        return previewId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if wallpaper has configuration action or settings activity
+     */
+    public boolean isConfigurable() {
+        return configAction.length() > 0 || settingsActivity.length() > 0;
+    }
+
+    /**
+     * Check component of entry without creating ComponentName
+     *
+     * @param componentName Component to compare
+     * @return true if entry describes same service
+     */
+    public boolean isComponent(ComponentName componentName) {
+        return componentName != null
+                && packageName.equals(componentName.getPackageName())
+                && serviceName.equals(componentName.getClassName());
+    }
+
+    /**
+     * @return new ComponentName of wallpaper service
+     */
+    public ComponentName getComponent() {
+        return new ComponentName(packageName, serviceName);
+    }
+
+    /**
+     * @return new Intent of wallpaper service
+     */
+    public Intent createIntent() {
+        Intent intent = new Intent(WallpaperService.SERVICE_INTERFACE);
+        intent.setClassName(packageName, serviceName);
+        return intent;
+    }
+
+    /**
+     * Create configuration Intent, watch face configuration action has precedence over settings activity
+     *
+     * @return new configuration Intent or null if wallpaper is not configurable
+     */
+    public Intent createConfigIntent() {
+        if (configAction.length() > 0) {
+            Intent configIntent = new Intent(configAction);
+            configIntent.addCategory(WATCHFACE_CONFIG_INTENT);
+            configIntent.addCategory(Intent.CATEGORY_DEFAULT);
+            return configIntent;
+        }
+        if (settingsActivity.length() > 0) {
+            Intent standartConfig = new Intent();
+            standartConfig.setComponent(new ComponentName(packageName, settingsActivity));
+            standartConfig.putExtra(WallpaperSettingsActivity.EXTRA_PREVIEW_MODE, true);
+            return standartConfig;
+        }
+        return null;
+    }
+
+    /**
+     * Create preview handle, nothing is decoded until WallpaperPreview.getBitmap()
+     *
+     * @param context Application context
+     * @return preview handle or null if wallpaper has no preview
+     */
+    public WallpaperPreview createPreview(Context context) {
+        return previewId != 0 ? new WallpaperPreview(context, packageName, previewId, version) : null;
+    }
+
+    /**
+     * Resolve wallpaper service with meta data, required for parsing WallpaperInfo
+     *
+     * @param packageManager PackageManager
+     * @return ResolveInfo or null if service is not installed anymore
+     */
+    public ResolveInfo resolve(PackageManager packageManager) {
+        List<ResolveInfo> list = packageManager.queryIntentServices(createIntent(), PackageManager.GET_META_DATA);
+        return list != null && !list.isEmpty() ? list.get(0) : null;
+    }
+
+    /**
+     * Write list of entries in binary form, package names stored once
+     *
+     * @param outputStream Target stream, not closed
+     * @param entries      Entries to write
+     * @throws IOException if stream can not be written
+     */
+    public static void writeList(OutputStream outputStream, List<WallpaperEntry> entries) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        Map<String, Integer> packages = new HashMap<>();
+        List<String> packageNames = new ArrayList<>();
+        for (WallpaperEntry entry : entries) {
+            if (!packages.containsKey(entry.packageName)) {
+                packages.put(entry.packageName, packageNames.size());
+                packageNames.add(entry.packageName);
+            }
+        }
+        out.writeInt(LIST_MAGIC);
+        out.writeInt(LIST_VERSION);
+        out.writeInt(packageNames.size());
+        for (String packageName : packageNames) {
+            out.writeUTF(packageName);
+        }
+        out.writeInt(entries.size());
+        for (WallpaperEntry entry : entries) {
+            out.writeInt(packages.get(entry.packageName));
+            out.writeUTF(entry.serviceName);
+            out.writeUTF(entry.label);
+            out.writeUTF(entry.configAction);
+            out.writeUTF(entry.settingsActivity);
+            out.writeInt(entry.previewId);
+            out.writeLong(entry.version);
+        }
+        out.flush();
+    }
+
+    /**
+     * Read list of entries written by writeList()
+     *
+     * @param inputStream Source stream, not closed
+     * @return entries in written order
+     * @throws IOException if stream can not be read or has unknown format
+     */
+    public static List<WallpaperEntry> readList(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != LIST_MAGIC || in.readInt() != LIST_VERSION) {
+            throw new IOException("Unknown wallpaper entry list format");
+        }
+        String[] packageNames = new String[in.readInt()];
+        for (int i = 0; i < packageNames.length; i++) {
+            packageNames[i] = in.readUTF();
+        }
+        int size = in.readInt();
+        List<WallpaperEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int packageIndex = in.readInt();
+            if (packageIndex < 0 || packageIndex >= packageNames.length) {
+                throw new IOException("Invalid package index " + packageIndex);
+            }
+            entries.add(new WallpaperEntry(packageNames[packageIndex], in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt(), in.readLong()));
+        }
+        return entries;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(packageName);
+        dest.writeString(serviceName);
+        dest.writeString(label);
+        dest.writeString(configAction);
+        dest.writeString(settingsActivity);
+        dest.writeInt(previewId);
+        dest.writeLong(version);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<WallpaperEntry> CREATOR = new Creator<WallpaperEntry>() {
+        @Override
+        public WallpaperEntry createFromParcel(Parcel source) {
+            return new WallpaperEntry(source.readString(), source.readString(), source.readString(), source.readString(), source.readString(), source.readInt(), source.readLong());
+        }
+
+        @Override
+        public WallpaperEntry[] newArray(int size) {
+            return new WallpaperEntry[size];
+        }
+    };
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof WallpaperEntry)) return false;
+        WallpaperEntry that = (WallpaperEntry) o;
+        return previewId == that.previewId
+                && version == that.version
+                && packageName.equals(that.packageName)
+                && serviceName.equals(that.serviceName)
+                && label.equals(that.label)
+                && configAction.equals(that.configAction)
+                && settingsActivity.equals(that.settingsActivity);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * packageName.hashCode() + serviceName.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "WallpaperEntry{" +
+                "packageName='" + packageName + '\'' +
+                ", serviceName='" + serviceName + '\'' +
+                ", label='" + label + '\'' +
+                ", previewId=" + previewId +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -1,27 +1,41 @@
 import android.annotation.SuppressLint;
 import android.app.WallpaperInfo;
-import android.content.ComponentName;
 import android.content.Context;
-import android.content.Intent;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.graphics.drawable.Drawable;
+import android.content.pm.ServiceInfo;
+import android.content.res.Resources;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
-import android.service.wallpaper.WallpaperService;
-import android.service.wallpaper.WallpaperSettingsActivity;
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
 
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.File;
 import java.io.IOException;
-import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE;
 import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_CONFIG;
-import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_CONFIG_INTENT;
 import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW;
 import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW_CIRCULAR;
 import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW_CLOCKWORK;
@@ -31,12 +45,60 @@ import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW_
 /**
  * Wallpaper Loader class used for async load all live wallpapers and watchfaces from device
  * <p>
+ * Kind of loaded wallpapers and filters defined by WallpaperQuery, watch faces loaded by default
+ * Items delivered in sorted batches: first page as soon as it is ready, rest by count or elapsed time
+ * <p>
+ * Loaded catalog stored in WallpaperSnapshot, so warm start parse only changed packages
+ * <p>
  * Created by Line'R (seriniti320@gmail.com) 19.07.2020
  */
 @SuppressLint("StaticFieldLeak")
-public class WallpaperLoader extends AsyncTask<Void, LiveWallpaperItem, Void> {
+public class WallpaperLoader extends AsyncTask<Void, Void, Void> {
+    private static final String SNAPSHOT_FILE = "wallpaper_catalog_";
+    private static final String SNAPSHOT_EXTENSION = ".bin";
+    private static final int MAX_THREADS = 4;
+    private static final int DEFAULT_FIRST_PAGE_SIZE = 8;
+    private static final int DEFAULT_BATCH_SIZE = 32;
+    private static final long DEFAULT_BATCH_INTERVAL = 250;
+    private static final String[] PREVIEW_KEYS = {
+            WATCHFACE_PREVIEW,
+            WATCHFACE_PREVIEW_CIRCULAR,
+            WATCHFACE_PREVIEW_CLOCKWORK,
+            WATCHFACE_PREVIEW_CLOCKWORK_CIRCULAR
+    };
+    private static final ThreadFactory LOADER_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "WallpaperLoader #" + count.incrementAndGet());
+        }
+    };
     private IWallpaperLoader iWallpaperLoader;
+    private IWallpaperBatchLoader iWallpaperBatchLoader;
+    private final List<LiveWallpaperItem> pendingItems = new ArrayList<>();
+    private final Handler mainHandler = WallpaperThreads.getMainHandler();
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliverPending();
+        }
+    };
     private Context context;
+    private WallpaperQuery wallpaperQuery;
+    private volatile boolean parallel;
+    private volatile int firstPageSize = DEFAULT_FIRST_PAGE_SIZE;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile long batchInterval = DEFAULT_BATCH_INTERVAL;
+    private volatile long loadTime = -1;
+    private volatile int packageContextCount;
+    private volatile int serviceCount;
 
     /**
      * Constructor for Wallpaper Loader
@@ -44,92 +106,547 @@ public class WallpaperLoader extends AsyncTask<Void, LiveWallpaperItem, Void> {
      * @param iWallpaperLoader Interface for receive loaded LiveWallpaperItem object
      */
     public WallpaperLoader(Context context, IWallpaperLoader iWallpaperLoader) {
+        this(context, WallpaperQuery.watchFaces(), iWallpaperLoader);
+    }
+
+    /**
+     * Constructor for Wallpaper Loader with query
+     * @param context Application context
+     * @param wallpaperQuery Kind of wallpapers and filters applied before any parsing
+     * @param iWallpaperLoader Interface for receive loaded LiveWallpaperItem object
+     */
+    public WallpaperLoader(Context context, WallpaperQuery wallpaperQuery, IWallpaperLoader iWallpaperLoader) {
         this.iWallpaperLoader = iWallpaperLoader;
         this.context = context;
+        this.wallpaperQuery = wallpaperQuery;
+    }
+
+    /**
+     * Constructor for Wallpaper Loader delivering sorted batches
+     * @param context Application context
+     * @param iWallpaperBatchLoader Interface for receive batches of loaded LiveWallpaperItem objects
+     */
+    public WallpaperLoader(Context context, IWallpaperBatchLoader iWallpaperBatchLoader) {
+        this(context, WallpaperQuery.watchFaces(), iWallpaperBatchLoader);
+    }
+
+    /**
+     * Constructor for Wallpaper Loader with query delivering sorted batches
+     * @param context Application context
+     * @param wallpaperQuery Kind of wallpapers and filters applied before any parsing
+     * @param iWallpaperBatchLoader Interface for receive batches of loaded LiveWallpaperItem objects
+     */
+    public WallpaperLoader(Context context, WallpaperQuery wallpaperQuery, IWallpaperBatchLoader iWallpaperBatchLoader) {
+        this.iWallpaperBatchLoader = iWallpaperBatchLoader;
+        this.context = context;
+        this.wallpaperQuery = wallpaperQuery;
+    }
+
+    /**
+     * Enable parallel loading mode, parsing and label loading of services will be spread over
+     * background threads, items still delivered in sorted order
+     * Must be called before execute()
+     *
+     * @param parallel true to load services in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Set size of first page, first page delivered as soon as its sorted items are loaded
+     * Must be called before execute()
+     *
+     * @param firstPageSize Count of items in first page, 0 to disable
+     */
+    public void setFirstPageSize(int firstPageSize) {
+        this.firstPageSize = firstPageSize;
+    }
+
+    /**
+     * Set batching of items after first page, batch delivered when it reaches size or interval elapsed
+     * Must be called before execute()
+     *
+     * @param batchSize     Maximum count of items in one delivery
+     * @param batchInterval Maximum time in milliseconds between deliveries
+     */
+    public void setBatching(int batchSize, long batchInterval) {
+        this.batchSize = Math.max(1, batchSize);
+        this.batchInterval = batchInterval;
+    }
+
+    /**
+     * @return true if parallel loading mode enabled
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Query count of foreign package contexts created by last load, compare with getServiceCount()
+     *
+     * @return count of created package contexts
+     */
+    public int getPackageContextCount() {
+        return packageContextCount;
+    }
+
+    /**
+     * @return count of wallpaper services handled by last load
+     */
+    public int getServiceCount() {
+        return serviceCount;
+    }
+
+    /**
+     * Query end-to-end load time of last finished load
+     *
+     * @return load time in milliseconds or -1 if loading not finished yet
+     */
+    public long getLoadTime() {
+        return loadTime;
     }
 
     @Override
     protected Void doInBackground(Void... voids) {
-        Intent filter = new Intent(WallpaperService.SERVICE_INTERFACE);
-        filter.addCategory(WATCHFACE);
-        List<ResolveInfo> list = context.getPackageManager().queryIntentServices(filter, PackageManager.GET_META_DATA);
+        final long startTime = SystemClock.elapsedRealtime();
+        final long metricsStart = WallpaperMetrics.start();
         final PackageManager packageManager = context.getPackageManager();
-        Collections.sort(list, new Comparator<ResolveInfo>() {
-            final Collator collator;
-
-            {
-                collator = Collator.getInstance();
+        List<ResolveInfo> list = wallpaperQuery.resolve(packageManager, null);
+        final File snapshotFile = new File(context.getCacheDir(), SNAPSHOT_FILE + wallpaperQuery.getMode() + SNAPSHOT_EXTENSION);
+        final WallpaperSnapshot snapshot = WallpaperSnapshot.read(snapshotFile, Locale.getDefault().toLanguageTag());
+        final Map<String, WallpaperSnapshot.PackageRecord> freshRecords = new HashMap<>();
+        final Map<String, PackageInfo> packageInfos = new HashMap<>();
+        final Map<String, List<ResolveInfo>> packageServices = new LinkedHashMap<>();
+        for (ResolveInfo resolveInfo : list) {
+            String packageName = resolveInfo.serviceInfo.packageName;
+            List<ResolveInfo> services = packageServices.get(packageName);
+            if (services == null) {
+                packageServices.put(packageName, services = new ArrayList<>());
             }
-
-            @Override
-            public int compare(ResolveInfo t1, ResolveInfo t2) {
-                return collator.compare(t1.loadLabel(packageManager), t2.loadLabel(packageManager));
+            services.add(resolveInfo);
+            if (packageInfos.containsKey(packageName)) {
+                continue;
             }
-        });
-        for (ResolveInfo resolveInfo : list) {
-            WallpaperInfo wallpaperInfo;
-            LiveWallpaperItem liveWallpaperItem = new LiveWallpaperItem();
+            PackageInfo packageInfo = null;
             try {
-                wallpaperInfo = new WallpaperInfo(context, resolveInfo);
-            } catch (XmlPullParserException | IOException e) {
+                packageInfo = packageManager.getPackageInfo(packageName, 0);
+            } catch (PackageManager.NameNotFoundException e) {
                 e.printStackTrace();
-                continue;
             }
-            liveWallpaperItem.setName(resolveInfo.loadLabel(packageManager).toString());
-            liveWallpaperItem.setIntent(new Intent(WallpaperService.SERVICE_INTERFACE));
-            liveWallpaperItem.getIntent().setClassName(wallpaperInfo.getPackageName(), wallpaperInfo.getServiceName());
-            liveWallpaperItem.setWallpaperInfo(wallpaperInfo);
-            Bundle metaData = resolveInfo.serviceInfo.metaData;
-            int previewID = metaData.getInt(WATCHFACE_PREVIEW);
-            int circlePreviewID = metaData.getInt(WATCHFACE_PREVIEW_CIRCULAR);
-            int clockPreviewID = metaData.getInt(WATCHFACE_PREVIEW_CLOCKWORK);
-            int circleClockPreviewID = metaData.getInt(WATCHFACE_PREVIEW_CLOCKWORK_CIRCULAR);
-            try {
-                Context ctx = context.createPackageContext(resolveInfo.serviceInfo.packageName, Context.CONTEXT_IGNORE_SECURITY);
-                Drawable drawable = null;
-                if (isValidID(previewID)) {
-                    drawable = ctx.getResources().getDrawable(previewID);
+            packageInfos.put(packageName, packageInfo);
+            if (packageInfo != null) {
+                WallpaperSnapshot.PackageRecord record = snapshot.getFresh(packageName, getVersionCode(packageInfo), packageInfo.lastUpdateTime);
+                if (record != null) {
+                    freshRecords.put(packageName, record);
+                }
+            }
+        }
+        Map<ResolveInfo, String> resolvedLabels = new IdentityHashMap<>();
+        Map<String, List<WallpaperSnapshot.ServiceRecord>> parsedServices = new HashMap<>();
+        ExecutorService executor = parallel ? Executors.newFixedThreadPool(getThreadCount(), LOADER_THREAD_FACTORY) : null;
+        try {
+            if (executor != null) {
+                List<LabelTask> labelTasks = new ArrayList<>(packageServices.size());
+                List<Future<String[]>> labelFutures = new ArrayList<>(packageServices.size());
+                for (List<ResolveInfo> services : packageServices.values()) {
+                    LabelTask labelTask = new LabelTask(services, freshRecords, packageManager);
+                    labelTasks.add(labelTask);
+                    labelFutures.add(executor.submit(labelTask));
                 }
-                if (isValidID(circlePreviewID)) {
-                    drawable = ctx.getResources().getDrawable(circlePreviewID);
+                int createdCount = 0;
+                for (int i = 0; i < labelTasks.size(); i++) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    String[] packageLabels;
+                    try {
+                        packageLabels = labelFutures.get(i).get();
+                    } catch (InterruptedException e) {
+                        return null;
+                    } catch (ExecutionException e) {
+                        e.printStackTrace();
+                        continue;
+                    }
+                    List<ResolveInfo> services = labelTasks.get(i).services;
+                    for (int j = 0; j < services.size(); j++) {
+                        resolvedLabels.put(services.get(j), packageLabels[j]);
+                    }
+                    createdCount += labelTasks.get(i).packageContexts.getCreatedCount();
                 }
-                if (isValidID(clockPreviewID)) {
-                    drawable = ctx.getResources().getDrawable(clockPreviewID);
+                packageContextCount = createdCount;
+            } else {
+                PackageContextCache packageContexts = new PackageContextCache(context, 0);
+                for (Map.Entry<String, List<ResolveInfo>> entry : packageServices.entrySet()) {
+                    for (ResolveInfo resolveInfo : entry.getValue()) {
+                        if (isCancelled()) {
+                            packageContexts.release();
+                            return null;
+                        }
+                        resolvedLabels.put(resolveInfo, loadLabel(resolveInfo, freshRecords, packageContexts, packageManager));
+                    }
+                    packageContexts.remove(entry.getKey());
                 }
-                if (isValidID(circleClockPreviewID)) {
-                    drawable = ctx.getResources().getDrawable(circleClockPreviewID);
+                packageContextCount = packageContexts.getCreatedCount();
+                packageContexts.release();
+            }
+            serviceCount = list.size();
+            List<ResolveInfo> labeled = new ArrayList<>(list.size());
+            List<String> labels = new ArrayList<>(list.size());
+            for (ResolveInfo resolveInfo : list) {
+                String label = resolvedLabels.get(resolveInfo);
+                if (label != null) {
+                    labeled.add(resolveInfo);
+                    labels.add(label);
                 }
-                liveWallpaperItem.setPreview(drawable);
-            } catch (PackageManager.NameNotFoundException e) {
-                e.printStackTrace();
             }
-            String configurationAction = metaData.getString(WATCHFACE_CONFIG);
-            if (configurationAction != null && configurationAction.length() > 0) {
-                Intent configIntent = new Intent(configurationAction);
-                configIntent.addCategory(WATCHFACE_CONFIG_INTENT);
-                configIntent.addCategory(Intent.CATEGORY_DEFAULT);
-                liveWallpaperItem.setConfigIntent(configIntent);
-            } else {
-                if (wallpaperInfo.getSettingsActivity() != null && wallpaperInfo.getSettingsActivity().length() > 0) {
-                    Intent standartConfig = new Intent();
-                    standartConfig.setComponent(new ComponentName(wallpaperInfo.getPackageName(), wallpaperInfo.getSettingsActivity()));
-                    standartConfig.putExtra(WallpaperSettingsActivity.EXTRA_PREVIEW_MODE, true);
-                    liveWallpaperItem.setIntent(standartConfig);
+            LabelIndex<ResolveInfo> labelIndex = new LabelIndex<>();
+            labelIndex.addAll(labels, labeled);
+            list = labelIndex.values();
+            List<Future<LoadResult>> futures = null;
+            if (executor != null) {
+                futures = new ArrayList<>(list.size());
+                for (int i = 0; i < list.size(); i++) {
+                    futures.add(executor.submit(new LoadTask(list.get(i), labelIndex.getLabel(i), freshRecords, packageInfos, packageManager)));
+                }
+            }
+            int queued = 0;
+            int flushed = 0;
+            for (int i = 0; i < list.size(); i++) {
+                if (isCancelled()) {
+                    return null;
+                }
+                LoadResult result;
+                if (futures != null) {
+                    try {
+                        result = futures.get(i).get();
+                    } catch (InterruptedException e) {
+                        return null;
+                    } catch (ExecutionException e) {
+                        e.printStackTrace();
+                        continue;
+                    }
+                } else {
+                    result = load(list.get(i), labelIndex.getLabel(i), freshRecords, packageInfos, packageManager);
+                }
+                if (result == null) {
+                    continue;
+                }
+                if (result.parsed) {
+                    String packageName = list.get(i).serviceInfo.packageName;
+                    List<WallpaperSnapshot.ServiceRecord> services = parsedServices.get(packageName);
+                    if (services == null) {
+                        parsedServices.put(packageName, services = new ArrayList<>());
+                    }
+                    services.add(result.service);
+                }
+                queue(result.item);
+                queued++;
+                boolean flush = flushed < firstPageSize
+                        ? queued >= firstPageSize
+                        : queued - flushed >= batchSize;
+                if (flush) {
+                    flushed = queued;
+                    publishProgress();
                 }
             }
-            publishProgress(liveWallpaperItem);
+            if (queued > flushed && !isCancelled()) {
+                publishProgress();
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        for (Map.Entry<String, List<WallpaperSnapshot.ServiceRecord>> entry : parsedServices.entrySet()) {
+            PackageInfo packageInfo = packageInfos.get(entry.getKey());
+            if (packageInfo == null) {
+                continue;
+            }
+            List<WallpaperSnapshot.ServiceRecord> services = new ArrayList<>(entry.getValue());
+            WallpaperSnapshot.PackageRecord record = freshRecords.get(entry.getKey());
+            if (record != null) {
+                services.addAll(record.services);
+            }
+            snapshot.put(new WallpaperSnapshot.PackageRecord(entry.getKey(), getVersionCode(packageInfo), packageInfo.lastUpdateTime, services));
         }
+        if (!wallpaperQuery.hasFilters()) {
+            snapshot.retain(packageInfos.keySet());
+        }
+        if (snapshot.isDirty()) {
+            snapshot.write(snapshotFile);
+        }
+        retainThumbnails(packageInfos, packageManager);
+        loadTime = SystemClock.elapsedRealtime() - startTime;
+        WallpaperMetrics.stop(WallpaperMetrics.LOAD_TOTAL, metricsStart);
         return null;
     }
 
-    @Override
-    protected void onProgressUpdate(LiveWallpaperItem... values) {
-        for (LiveWallpaperItem item : values)
-            if (iWallpaperLoader != null)
+    /**
+     * Remove stored thumbnails of uninstalled packages
+     * Packages of other queries are kept while they are installed, so store shared by all loaders is not cleared
+     *
+     * @param packageInfos   Installed packages of loaded services
+     * @param packageManager PackageManager for checking other packages
+     */
+    private void retainThumbnails(Map<String, PackageInfo> packageInfos, PackageManager packageManager) {
+        if (isCancelled()) {
+            return;
+        }
+        ThumbnailStore thumbnailStore = WallpaperPreview.getThumbnailStore(context);
+        Set<String> livePackages = thumbnailStore.getPackages();
+        Iterator<String> iterator = livePackages.iterator();
+        while (iterator.hasNext()) {
+            String packageName = iterator.next();
+            if (packageInfos.containsKey(packageName)) {
+                continue;
+            }
+            try {
+                packageManager.getPackageInfo(packageName, 0);
+            } catch (PackageManager.NameNotFoundException e) {
+                iterator.remove();
+            }
+        }
+        thumbnailStore.retain(livePackages);
+    }
+
+    /**
+     * Load single wallpaper service from snapshot or parse it if package was changed
+     *
+     * @param resolveInfo    Wallpaper service ResolveInfo
+     * @param label          Resolved label of service
+     * @param freshRecords   Snapshot records of not changed packages
+     * @param packageInfos   Installed packages of services
+     * @param packageManager PackageManager for parsing WallpaperInfo
+     * @return load result or null if service is not valid wallpaper or loading was cancelled
+     */
+    private LoadResult load(ResolveInfo resolveInfo, String label, Map<String, WallpaperSnapshot.PackageRecord> freshRecords, Map<String, PackageInfo> packageInfos, PackageManager packageManager) {
+        if (isCancelled()) {
+            return null;
+        }
+        WallpaperSnapshot.PackageRecord record = freshRecords.get(resolveInfo.serviceInfo.packageName);
+        WallpaperSnapshot.ServiceRecord service = record != null ? record.find(resolveInfo.serviceInfo.name) : null;
+        boolean parsed = false;
+        if (service == null) {
+            service = parseService(resolveInfo, label);
+            if (service == null || isCancelled()) {
+                return null;
+            }
+            parsed = true;
+        }
+        PackageInfo packageInfo = packageInfos.get(resolveInfo.serviceInfo.packageName);
+        long version = packageInfo != null ? packageInfo.lastUpdateTime : 0;
+        return new LoadResult(createItem(resolveInfo, service, version), service, parsed);
+    }
+
+    /**
+     * Synchronously load all wallpapers of single package matching query, used for incremental catalog updates
+     * Package is always parsed again, must not be called from main thread
+     *
+     * @param packageName Package name
+     * @return loaded wallpapers of package in resolve order, empty if package has no wallpapers or was removed
+     */
+    public List<LiveWallpaperItem> loadPackage(String packageName) {
+        PackageManager packageManager = context.getPackageManager();
+        List<ResolveInfo> list = wallpaperQuery.resolve(packageManager, packageName);
+        List<LiveWallpaperItem> items = new ArrayList<>(list.size());
+        if (list.isEmpty()) {
+            return items;
+        }
+        long version;
+        try {
+            version = packageManager.getPackageInfo(packageName, 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return items;
+        }
+        PackageContextCache packageContexts = new PackageContextCache(context, 1);
+        for (ResolveInfo resolveInfo : list) {
+            String label = loadLabel(resolveInfo, Collections.<String, WallpaperSnapshot.PackageRecord>emptyMap(), packageContexts, packageManager);
+            WallpaperSnapshot.ServiceRecord service = parseService(resolveInfo, label);
+            if (service != null) {
+                items.add(createItem(resolveInfo, service, version));
+            }
+        }
+        packageContexts.release();
+        return items;
+    }
+
+    /**
+     * Parse wallpaper service into snapshot record, this is the expensive cold path:
+     * WallpaperInfo XML parsing from foreign package
+     *
+     * @param resolveInfo Wallpaper service ResolveInfo
+     * @param label       Resolved label of service
+     * @return parsed service record or null if service is not valid wallpaper
+     */
+    private WallpaperSnapshot.ServiceRecord parseService(ResolveInfo resolveInfo, String label) {
+        WallpaperInfo wallpaperInfo;
+        long parseStart = WallpaperMetrics.start();
+        try {
+            wallpaperInfo = new WallpaperInfo(context, resolveInfo);
+        } catch (XmlPullParserException | IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        WallpaperMetrics.stop(WallpaperMetrics.LOAD_PARSE, parseStart);
+        Bundle metaData = resolveInfo.serviceInfo.metaData;
+        int previewID = 0;
+        String configurationAction = null;
+        if (metaData != null) {
+            for (String key : PREVIEW_KEYS) {
+                int id = metaData.getInt(key);
+                if (isValidID(id)) {
+                    previewID = id;
+                }
+            }
+            configurationAction = metaData.getString(WATCHFACE_CONFIG);
+        }
+        if (!isValidID(previewID)) {
+            previewID = WallpaperBindings.getThumbnailResource(wallpaperInfo);
+        }
+        return new WallpaperSnapshot.ServiceRecord(
+                resolveInfo.serviceInfo.name,
+                label,
+                configurationAction,
+                wallpaperInfo.getSettingsActivity(),
+                previewID
+        );
+    }
+
+    /**
+     * Create LiveWallpaperItem from service record, WallpaperInfo, intents and preview are built only when requested
+     *
+     * @param resolveInfo Wallpaper service ResolveInfo
+     * @param service     Service record from snapshot or freshly parsed
+     * @param version     Package lastUpdateTime used for preview thumbnail invalidation
+     * @return LiveWallpaperItem
+     */
+    private LiveWallpaperItem createItem(ResolveInfo resolveInfo, WallpaperSnapshot.ServiceRecord service, long version) {
+        WallpaperEntry entry = new WallpaperEntry(
+                resolveInfo.serviceInfo.packageName,
+                service.serviceName,
+                service.label,
+                service.configAction,
+                service.settingsActivity,
+                isValidID(service.previewId) ? service.previewId : 0,
+                version
+        );
+        return new LiveWallpaperItem(context, entry);
+    }
+
+    /**
+     * Query thread count for parallel mode, bounded by available cores
+     */
+    private static int getThreadCount() {
+        return Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS));
+    }
+
+    /**
+     * Query label of service, from snapshot if package was not changed
+     * Called exactly once per service, sorting uses precomputed collation keys
+     * Service label resources loaded through shared package context of service package
+     */
+    private static String loadLabel(ResolveInfo resolveInfo, Map<String, WallpaperSnapshot.PackageRecord> freshRecords, PackageContextCache packageContexts, PackageManager packageManager) {
+        ServiceInfo serviceInfo = resolveInfo.serviceInfo;
+        WallpaperSnapshot.PackageRecord record = freshRecords.get(serviceInfo.packageName);
+        if (record != null) {
+            WallpaperSnapshot.ServiceRecord service = record.find(serviceInfo.name);
+            if (service != null) {
+                return service.label;
+            }
+        }
+        long labelStart = WallpaperMetrics.start();
+        CharSequence label = null;
+        if (resolveInfo.nonLocalizedLabel == null && resolveInfo.labelRes == 0 && serviceInfo.nonLocalizedLabel == null && serviceInfo.labelRes != 0) {
+            Resources resources = packageContexts.getResources(serviceInfo.packageName);
+            if (resources != null) {
+                try {
+                    label = resources.getText(serviceInfo.labelRes);
+                } catch (Resources.NotFoundException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        if (label == null) {
+            label = resolveInfo.loadLabel(packageManager);
+        }
+        WallpaperMetrics.stop(WallpaperMetrics.LOAD_LABEL, labelStart);
+        return label.toString();
+    }
+
+    /**
+     * Query versionCode of package for snapshot validation
+     */
+    @SuppressWarnings("deprecation")
+    private static long getVersionCode(PackageInfo packageInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return packageInfo.getLongVersionCode();
+        }
+        return packageInfo.versionCode;
+    }
+
+    /**
+     * Add loaded item to pending batch, timed flush scheduled when batch starts
+     * so items are delivered within batch interval even while next item is still loading
+     */
+    private void queue(LiveWallpaperItem item) {
+        synchronized (pendingItems) {
+            if (pendingItems.isEmpty()) {
+                mainHandler.postDelayed(flushRunnable, batchInterval);
+            }
+            pendingItems.add(item);
+        }
+    }
+
+    /**
+     * Main thread, deliver all pending items in sorted order, called by size flush, timed flush and on finish
+     */
+    private void deliverPending() {
+        List<LiveWallpaperItem> items;
+        synchronized (pendingItems) {
+            mainHandler.removeCallbacks(flushRunnable);
+            if (pendingItems.isEmpty()) {
+                return;
+            }
+            items = new ArrayList<>(pendingItems);
+            pendingItems.clear();
+        }
+        if (isCancelled()) {
+            return;
+        }
+        if (iWallpaperBatchLoader != null) {
+            iWallpaperBatchLoader.onWallpapersLoaded(items);
+        } else if (iWallpaperLoader != null) {
+            for (LiveWallpaperItem item : items) {
                 iWallpaperLoader.onWallpaperLoaded(item);
+            }
+        }
+    }
+
+    @Override
+    protected void onProgressUpdate(Void... values) {
+        deliverPending();
         super.onProgressUpdate(values);
     }
 
+    @Override
+    protected void onPostExecute(Void result) {
+        deliverPending();
+        if (iWallpaperBatchLoader != null) {
+            iWallpaperBatchLoader.onLoadFinished();
+        }
+        super.onPostExecute(result);
+    }
+
+    @Override
+    protected void onCancelled() {
+        synchronized (pendingItems) {
+            mainHandler.removeCallbacks(flushRunnable);
+            pendingItems.clear();
+        }
+        super.onCancelled();
+    }
+
     /**
      * Query if ID exist in MetaData from Bundle
      * @param id ID for check
@@ -139,10 +656,84 @@ public class WallpaperLoader extends AsyncTask<Void, LiveWallpaperItem, Void> {
         return id != 0;
     }
 
+    /**
+     * Parallel label task for all services of single package, package context created once by own cache of task
+     */
+    private class LabelTask implements Callable<String[]> {
+        private final List<ResolveInfo> services;
+        private final Map<String, WallpaperSnapshot.PackageRecord> freshRecords;
+        private final PackageManager packageManager;
+        private final PackageContextCache packageContexts = new PackageContextCache(context, 1);
+
+        LabelTask(List<ResolveInfo> services, Map<String, WallpaperSnapshot.PackageRecord> freshRecords, PackageManager packageManager) {
+            this.services = services;
+            this.freshRecords = freshRecords;
+            this.packageManager = packageManager;
+        }
+
+        @Override
+        public String[] call() {
+            String[] labels = new String[services.size()];
+            for (int i = 0; i < labels.length && !isCancelled(); i++) {
+                labels[i] = loadLabel(services.get(i), freshRecords, packageContexts, packageManager);
+            }
+            packageContexts.release();
+            return labels;
+        }
+    }
+
+    /**
+     * Parallel loading task for single wallpaper service
+     */
+    private class LoadTask implements Callable<LoadResult> {
+        private final ResolveInfo resolveInfo;
+        private final String label;
+        private final Map<String, WallpaperSnapshot.PackageRecord> freshRecords;
+        private final Map<String, PackageInfo> packageInfos;
+        private final PackageManager packageManager;
+
+        LoadTask(ResolveInfo resolveInfo, String label, Map<String, WallpaperSnapshot.PackageRecord> freshRecords, Map<String, PackageInfo> packageInfos, PackageManager packageManager) {
+            this.resolveInfo = resolveInfo;
+            this.label = label;
+            this.freshRecords = freshRecords;
+            this.packageInfos = packageInfos;
+            this.packageManager = packageManager;
+        }
+
+        @Override
+        public LoadResult call() {
+            return load(resolveInfo, label, freshRecords, packageInfos, packageManager);
+        }
+    }
+
+    /**
+     * Result of loading single wallpaper service
+     */
+    private static class LoadResult {
+        final LiveWallpaperItem item;
+        final WallpaperSnapshot.ServiceRecord service;
+        final boolean parsed;
+
+        LoadResult(LiveWallpaperItem item, WallpaperSnapshot.ServiceRecord service, boolean parsed) {
+            this.item = item;
+            this.service = service;
+            this.parsed = parsed;
+        }
+    }
+
     /**
      * IWallpaperLoader interface for receive loaded LiveWallpaperItem object
      */
     public interface IWallpaperLoader {
         void onWallpaperLoaded(LiveWallpaperItem liveWallpaperItem);
     }
+
+    /**
+     * IWallpaperBatchLoader interface for receive loaded items in sorted batches, one callback per batch
+     */
+    public interface IWallpaperBatchLoader {
+        void onWallpapersLoaded(List<LiveWallpaperItem> liveWallpaperItems);
+
+        void onLoadFinished();
+    }
 }
@@ -0,0 +1,143 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Built-in latency instrumentation of Live Wallpaper Manager
+ * <p>
+ * Load, bind and touch dispatch milestones recorded into LatencyHistogram per metric name
+ * Engine metrics are durations of visible, reduced and hidden intervals of active engine
+ * Samples can be exported with snapshot() or received live through IMetricsListener
+ */
+public final class WallpaperMetrics {
+    public static final String LOAD_TOTAL = "load.total";
+    public static final String LOAD_PARSE = "load.parse";
+    public static final String LOAD_LABEL = "load.label";
+    public static final String LOAD_CONTEXT = "load.context";
+    public static final String LOAD_PREVIEW = "load.preview";
+    public static final String BIND_CONNECTED = "bind.connected";
+    public static final String BIND_ATTACHED = "bind.attached";
+    public static final String BIND_SHOWN = "bind.shown";
+    public static final String BIND_TOTAL = "bind.total";
+    public static final String BIND_REATTACH = "bind.reattach";
+    public static final String TOUCH_POINTER = "touch.dispatchPointer";
+    public static final String TOUCH_COMMAND = "touch.dispatchWallpaperCommand";
+    public static final String OFFSET_DISPATCH = "offset.setWallpaperOffsets";
+    public static final String ENGINE_VISIBLE = "engine.visible";
+    public static final String ENGINE_REDUCED = "engine.reduced";
+    public static final String ENGINE_HIDDEN = "engine.hidden";
+    public static final String ENGINE_RECOVERY = "engine.recovery";
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final CopyOnWriteArrayList<IMetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static volatile boolean enabled = true;
+
+    private WallpaperMetrics() {
+    }
+
+    /**
+     * Enable or disable recording, enabled by default
+     *
+     * @param enabled true to record samples
+     */
+    public static void setEnabled(boolean enabled) {
+        WallpaperMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Query start timestamp for later record() call
+     *
+     * @return timestamp in nanoseconds or 0 if recording disabled
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record duration since timestamp from start()
+     *
+     * @param metric     Metric name
+     * @param startNanos Timestamp from start()
+     */
+    public static void stop(String metric, long startNanos) {
+        if (startNanos != 0) {
+            record(metric, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record single sample
+     *
+     * @param metric Metric name
+     * @param nanos  Duration in nanoseconds
+     */
+    public static void record(String metric, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        getHistogram(metric).record(nanos);
+        for (IMetricsListener listener : LISTENERS) {
+            listener.onSample(metric, nanos);
+        }
+    }
+
+    /**
+     * Get histogram of metric, created on first request
+     *
+     * @param metric Metric name
+     * @return histogram of metric
+     */
+    public static LatencyHistogram getHistogram(String metric) {
+        LatencyHistogram histogram = HISTOGRAMS.get(metric);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(metric);
+            LatencyHistogram previous = HISTOGRAMS.putIfAbsent(metric, histogram);
+            if (previous != null) {
+                histogram = previous;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Take snapshot of all metrics, for example to upload it from field devices
+     *
+     * @return snapshots sorted by metric name
+     */
+    public static Map<String, LatencyHistogram.Snapshot> snapshot() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            snapshots.put(histogram.getName(), histogram.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Reset all metrics
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    public static void addListener(IMetricsListener listener) {
+        LISTENERS.addIfAbsent(listener);
+    }
+
+    public static void removeListener(IMetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * IMetricsListener interface for receive every recorded sample, called on thread which recorded sample
+     */
+    public interface IMetricsListener {
+        void onSample(String metric, long nanos);
+    }
+}
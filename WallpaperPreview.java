@@ -0,0 +1,226 @@
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * Lazy preview handle of LiveWallpaperItem
+ * <p>
+ * Preview decoded only when requested, downscaled to requested size and stored in PreviewCache
+ * Decoded previews also stored in ThumbnailStore, so next launch reads them without touching wallpaper package
+ * Decoding touches foreign package resources, so call it from background thread
+ */
+public class WallpaperPreview {
+    private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+    private static final int PACKAGE_CONTEXT_CACHE_SIZE = 4;
+    private static ThumbnailStore thumbnailStore;
+    private static PackageContextCache packageContexts;
+    private final Context context;
+    private final String packageName;
+    private final int previewId;
+    private final long version;
+
+    /**
+     * Constructor for Wallpaper Preview
+     *
+     * @param context     Application context
+     * @param packageName Wallpaper package name
+     * @param previewId   Preview drawable resource id in wallpaper package
+     * @param version     Version of wallpaper package (lastUpdateTime), stored thumbnails of other version are ignored
+     */
+    public WallpaperPreview(Context context, String packageName, int previewId, long version) {
+        this.context = context;
+        this.packageName = packageName;
+        this.previewId = previewId;
+        this.version = version;
+    }
+
+    /**
+     * Get shared thumbnail store in application cache dir
+     *
+     * @param context Application context
+     * @return instance of ThumbnailStore
+     */
+    public static synchronized ThumbnailStore getThumbnailStore(Context context) {
+        if (thumbnailStore == null) {
+            thumbnailStore = new ThumbnailStore(new File(context.getCacheDir(), THUMBNAIL_DIRECTORY));
+        }
+        return thumbnailStore;
+    }
+
+    /**
+     * Get shared cache of package contexts used for decoding, previews of same package share one context
+     *
+     * @param context Application context
+     * @return instance of PackageContextCache
+     */
+    public static synchronized PackageContextCache getPackageContexts(Context context) {
+        if (packageContexts == null) {
+            packageContexts = new PackageContextCache(context, PACKAGE_CONTEXT_CACHE_SIZE);
+        }
+        return packageContexts;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public int getPreviewId() {
+        return previewId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Query decoded preview bitmap not bigger than requested size
+     *
+     * @param width  Target width in pixels
+     * @param height Target height in pixels
+     * @return preview bitmap or null if preview can not be decoded
+     */
+    public Bitmap getBitmap(int width, int height) {
+        PreviewCache previewCache = PreviewCache.getInstance(context);
+        String key = getKey(width, height);
+        String cacheKey = key + '@' + version;
+        Bitmap bitmap = previewCache.get(cacheKey);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        ThumbnailStore store = getThumbnailStore(context);
+        bitmap = readThumbnail(store, key);
+        if (bitmap == null) {
+            bitmap = decode(width, height);
+            if (bitmap != null) {
+                writeThumbnail(store, key, bitmap);
+            }
+        }
+        if (bitmap != null) {
+            previewCache.put(cacheKey, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Query decoded preview as Drawable not bigger than requested size
+     *
+     * @param width  Target width in pixels
+     * @param height Target height in pixels
+     * @return preview drawable or null if preview can not be decoded
+     */
+    public Drawable getDrawable(int width, int height) {
+        Bitmap bitmap = getBitmap(width, height);
+        return bitmap != null ? new BitmapDrawable(context.getResources(), bitmap) : null;
+    }
+
+    /**
+     * Read stored thumbnail, pixels copied directly from mapped pack file
+     */
+    private Bitmap readThumbnail(ThumbnailStore store, String key) {
+        ThumbnailStore.Thumbnail thumbnail = store.get(key, version);
+        if (thumbnail == null || thumbnail.pixels.remaining() != thumbnail.width * thumbnail.height * 4) {
+            return null;
+        }
+        Bitmap bitmap = Bitmap.createBitmap(thumbnail.width, thumbnail.height, Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(thumbnail.pixels);
+        return bitmap;
+    }
+
+    /**
+     * Store decoded preview as raw ARGB_8888 pixels
+     */
+    private void writeThumbnail(ThumbnailStore store, String key, Bitmap bitmap) {
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            return;
+        }
+        ByteBuffer pixels = ByteBuffer.allocate(bitmap.getWidth() * bitmap.getHeight() * 4);
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.flip();
+        store.put(key, version, bitmap.getWidth(), bitmap.getHeight(), pixels);
+    }
+
+    /**
+     * Decode preview resource with sample size matching target size
+     */
+    private Bitmap decode(int width, int height) {
+        Resources resources = getPackageContexts(context).getResources(packageName, version);
+        if (resources == null) {
+            return null;
+        }
+        long previewStart = WallpaperMetrics.start();
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(resources, previewId, options);
+            if (options.outWidth > 0 && options.outHeight > 0) {
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, width, height);
+                Bitmap bitmap = BitmapFactory.decodeResource(resources, previewId, options);
+                return bitmap != null ? scale(bitmap, width, height) : null;
+            }
+            Drawable drawable = resources.getDrawable(previewId);
+            return drawable != null ? render(drawable, width, height) : null;
+        } catch (Resources.NotFoundException | OutOfMemoryError e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            WallpaperMetrics.stop(WallpaperMetrics.LOAD_PREVIEW, previewStart);
+        }
+    }
+
+    /**
+     * Query largest power of two sample size which keeps bitmap not smaller than target size
+     */
+    static int getSampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= width && sourceHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Scale bitmap down to fit target size keeping aspect ratio
+     */
+    private static Bitmap scale(Bitmap bitmap, int width, int height) {
+        if (bitmap.getWidth() <= width && bitmap.getHeight() <= height) {
+            return bitmap;
+        }
+        float ratio = Math.min((float) width / bitmap.getWidth(), (float) height / bitmap.getHeight());
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(bitmap.getWidth() * ratio)), Math.max(1, Math.round(bitmap.getHeight() * ratio)), true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Render non bitmap drawable (vector, xml) into bitmap of target size
+     */
+    private static Bitmap render(Drawable drawable, int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(new Canvas(bitmap));
+        return bitmap;
+    }
+
+    private String getKey(int width, int height) {
+        return packageName + ':' + previewId + ':' + width + 'x' + height;
+    }
+
+    @Override
+    public String toString() {
+        return "WallpaperPreview{" +
+                "packageName='" + packageName + '\'' +
+                ", previewId=" + previewId +
+                ", version=" + version +
+                '}';
+    }
+}
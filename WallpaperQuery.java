@@ -0,0 +1,193 @@
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Bundle;
+import android.service.wallpaper.WallpaperService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE;
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_CONFIG;
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW;
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW_CIRCULAR;
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW_CLOCKWORK;
+import static com.liner.linerlauncher.LW.LiveWallpaperManager.WATCHFACE_PREVIEW_CLOCKWORK_CIRCULAR;
+
+/**
+ * Query for WallpaperLoader: kind of wallpapers and filters over cheap ResolveInfo fields
+ * <p>
+ * Filters applied right after PackageManager query, before any WallpaperInfo XML parsing or resource loading,
+ * so filtered views cost only what they return
+ */
+public class WallpaperQuery {
+    public static final int WATCH_FACES = 1;
+    public static final int LIVE_WALLPAPERS = 2;
+    public static final int ALL = WATCH_FACES | LIVE_WALLPAPERS;
+
+    private final int mode;
+    private final List<IFilter> filters = new ArrayList<>();
+
+    /**
+     * Constructor for Wallpaper Query
+     *
+     * @param mode WATCH_FACES, LIVE_WALLPAPERS or ALL
+     */
+    public WallpaperQuery(int mode) {
+        if ((mode & ALL) == 0) {
+            throw new IllegalArgumentException("Unknown query mode " + mode);
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * @return query of watch faces only, default query of WallpaperLoader
+     */
+    public static WallpaperQuery watchFaces() {
+        return new WallpaperQuery(WATCH_FACES);
+    }
+
+    /**
+     * @return query of plain live wallpapers which are not watch faces
+     */
+    public static WallpaperQuery liveWallpapers() {
+        return new WallpaperQuery(LIVE_WALLPAPERS);
+    }
+
+    /**
+     * @return query of watch faces and plain live wallpapers
+     */
+    public static WallpaperQuery all() {
+        return new WallpaperQuery(ALL);
+    }
+
+    /**
+     * Add filter, service included only if all filters accept it
+     *
+     * @param filter Filter over ResolveInfo
+     * @return this query
+     */
+    public WallpaperQuery addFilter(IFilter filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * @return true if query has any filter
+     */
+    public boolean hasFilters() {
+        return !filters.isEmpty();
+    }
+
+    /**
+     * Query wallpaper services from PackageManager and apply filters
+     *
+     * @param packageManager PackageManager
+     * @param packageName    Package to query or null for all packages
+     * @return accepted services
+     */
+    public List<ResolveInfo> resolve(PackageManager packageManager, String packageName) {
+        Intent filter = new Intent(WallpaperService.SERVICE_INTERFACE);
+        int flags = PackageManager.GET_META_DATA;
+        if (mode == WATCH_FACES) {
+            filter.addCategory(WATCHFACE);
+        } else if (mode == LIVE_WALLPAPERS) {
+            flags |= PackageManager.GET_RESOLVED_FILTER;
+        }
+        if (packageName != null) {
+            filter.setPackage(packageName);
+        }
+        List<ResolveInfo> list = packageManager.queryIntentServices(filter, flags);
+        Iterator<ResolveInfo> iterator = list.iterator();
+        while (iterator.hasNext()) {
+            if (!accept(iterator.next())) {
+                iterator.remove();
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Check service against mode and all filters
+     *
+     * @param resolveInfo Wallpaper service ResolveInfo
+     * @return true if service accepted
+     */
+    public boolean accept(ResolveInfo resolveInfo) {
+        if (mode == LIVE_WALLPAPERS && resolveInfo.filter != null && resolveInfo.filter.hasCategory(WATCHFACE)) {
+            return false;
+        }
+        for (IFilter filter : filters) {
+            if (!filter.accept(resolveInfo)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filter of services from listed packages
+     *
+     * @param packageNames Package names
+     * @return filter
+     */
+    public static IFilter inPackage(String... packageNames) {
+        final Set<String> packages = new HashSet<>(Arrays.asList(packageNames));
+        return new IFilter() {
+            @Override
+            public boolean accept(ResolveInfo resolveInfo) {
+                return packages.contains(resolveInfo.serviceInfo.packageName);
+            }
+        };
+    }
+
+    /**
+     * Filter of watch faces with wearable configuration action in meta-data
+     * Settings activity of plain live wallpapers declared in XML, so it is not visible for this filter
+     *
+     * @return filter
+     */
+    public static IFilter hasConfigAction() {
+        return new IFilter() {
+            @Override
+            public boolean accept(ResolveInfo resolveInfo) {
+                Bundle metaData = resolveInfo.serviceInfo.metaData;
+                String configurationAction = metaData != null ? metaData.getString(WATCHFACE_CONFIG) : null;
+                return configurationAction != null && configurationAction.length() > 0;
+            }
+        };
+    }
+
+    /**
+     * Filter of services with preview declared in meta-data
+     *
+     * @return filter
+     */
+    public static IFilter hasPreview() {
+        return new IFilter() {
+            @Override
+            public boolean accept(ResolveInfo resolveInfo) {
+                Bundle metaData = resolveInfo.serviceInfo.metaData;
+                return metaData != null && (metaData.getInt(WATCHFACE_PREVIEW) != 0
+                        || metaData.getInt(WATCHFACE_PREVIEW_CIRCULAR) != 0
+                        || metaData.getInt(WATCHFACE_PREVIEW_CLOCKWORK) != 0
+                        || metaData.getInt(WATCHFACE_PREVIEW_CLOCKWORK_CIRCULAR) != 0);
+            }
+        };
+    }
+
+    /**
+     * IFilter interface for filter services before parsing, must use only cheap ResolveInfo and meta-data fields
+     */
+    public interface IFilter {
+        boolean accept(ResolveInfo resolveInfo);
+    }
+}
@@ -0,0 +1,239 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact on-disk snapshot of the wallpaper catalog used by WallpaperLoader
+ * <p>
+ * Every package is stored with its versionCode and lastUpdateTime, so on warm start
+ * only packages which were changed since last load need to be parsed again
+ * Labels are localized, so snapshot stores locale it was built for and snapshot of other locale is treated as empty
+ */
+public class WallpaperSnapshot {
+    private static final int MAGIC = 0x4C575353;
+    private static final int FORMAT_VERSION = 2;
+
+    private final Map<String, PackageRecord> packages = new HashMap<>();
+    private final String locale;
+    private boolean dirty;
+
+    /**
+     * Constructor for empty Wallpaper Snapshot
+     *
+     * @param locale Language tag of labels stored in snapshot
+     */
+    public WallpaperSnapshot(String locale) {
+        this.locale = locale != null ? locale : "";
+    }
+
+    /**
+     * Read snapshot from file
+     *
+     * @param file   Snapshot file
+     * @param locale Language tag of current locale
+     * @return stored snapshot, or empty snapshot if file missing, corrupted or built for other locale
+     */
+    public static WallpaperSnapshot read(File file, String locale) {
+        WallpaperSnapshot snapshot = new WallpaperSnapshot(locale);
+        if (!file.exists()) {
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(snapshot.locale)) {
+                snapshot.dirty = true;
+                return snapshot;
+            }
+            int packageCount = in.readInt();
+            for (int i = 0; i < packageCount; i++) {
+                String packageName = in.readUTF();
+                long versionCode = in.readLong();
+                long lastUpdateTime = in.readLong();
+                int serviceCount = in.readInt();
+                List<ServiceRecord> services = new ArrayList<>(serviceCount);
+                for (int j = 0; j < serviceCount; j++) {
+                    services.add(new ServiceRecord(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readInt()));
+                }
+                snapshot.packages.put(packageName, new PackageRecord(packageName, versionCode, lastUpdateTime, services));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            snapshot.packages.clear();
+            snapshot.dirty = true;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Write snapshot into file, previous file will be replaced only after successful write
+     *
+     * @param file Snapshot file
+     * @return true if snapshot was written
+     */
+    public boolean write(File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(locale);
+            out.writeInt(packages.size());
+            for (PackageRecord record : packages.values()) {
+                out.writeUTF(record.packageName);
+                out.writeLong(record.versionCode);
+                out.writeLong(record.lastUpdateTime);
+                out.writeInt(record.services.size());
+                for (ServiceRecord service : record.services) {
+                    out.writeUTF(service.serviceName);
+                    out.writeUTF(service.label);
+                    out.writeUTF(service.configAction);
+                    out.writeUTF(service.settingsActivity);
+                    out.writeInt(service.previewId);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+            return false;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return false;
+        }
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Query stored package record
+     *
+     * @param packageName Package name
+     * @return stored record or null
+     */
+    public PackageRecord get(String packageName) {
+        return packages.get(packageName);
+    }
+
+    /**
+     * Query stored package record only if it still matches installed package
+     *
+     * @param packageName    Package name
+     * @param versionCode    Installed package versionCode
+     * @param lastUpdateTime Installed package lastUpdateTime
+     * @return stored record or null if package was changed
+     */
+    public PackageRecord getFresh(String packageName, long versionCode, long lastUpdateTime) {
+        PackageRecord record = packages.get(packageName);
+        if (record != null && record.versionCode == versionCode && record.lastUpdateTime == lastUpdateTime) {
+            return record;
+        }
+        return null;
+    }
+
+    /**
+     * Store package record, replacing previous one
+     *
+     * @param record Package record
+     */
+    public void put(PackageRecord record) {
+        packages.put(record.packageName, record);
+        dirty = true;
+    }
+
+    /**
+     * Remove all packages which are not installed anymore
+     *
+     * @param packageNames Installed package names
+     */
+    public void retain(Set<String> packageNames) {
+        Iterator<String> iterator = packages.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (!packageNames.contains(iterator.next())) {
+                iterator.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * @return true if snapshot was changed since read or last write
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * @return language tag of labels stored in snapshot
+     */
+    public String getLocale() {
+        return locale;
+    }
+
+    /**
+     * @return count of stored packages
+     */
+    public int size() {
+        return packages.size();
+    }
+
+    /**
+     * Snapshot of single package
+     */
+    public static class PackageRecord {
+        public final String packageName;
+        public final long versionCode;
+        public final long lastUpdateTime;
+        public final List<ServiceRecord> services;
+
+        public PackageRecord(String packageName, long versionCode, long lastUpdateTime, List<ServiceRecord> services) {
+            this.packageName = packageName;
+            this.versionCode = versionCode;
+            this.lastUpdateTime = lastUpdateTime;
+            this.services = Collections.unmodifiableList(new ArrayList<>(services));
+        }
+
+        /**
+         * Query service record by class name
+         *
+         * @param serviceName Service class name
+         * @return stored service or null
+         */
+        public ServiceRecord find(String serviceName) {
+            for (ServiceRecord service : services) {
+                if (service.serviceName.equals(serviceName)) {
+                    return service;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Snapshot of single wallpaper service, empty strings used instead of null values
+     */
+    public static class ServiceRecord {
+        public final String serviceName;
+        public final String label;
+        public final String configAction;
+        public final String settingsActivity;
+        public final int previewId;
+
+        public ServiceRecord(String serviceName, String label, String configAction, String settingsActivity, int previewId) {
+            this.serviceName = serviceName;
+            this.label = label != null ? label : "";
+            this.configAction = configAction != null ? configAction : "";
+            this.settingsActivity = settingsActivity != null ? settingsActivity : "";
+            this.previewId = previewId;
+        }
+    }
+}
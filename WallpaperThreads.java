@@ -0,0 +1,56 @@
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.view.Choreographer;
+
+/**
+ * Shared background threads of Live Wallpaper Manager
+ * <p>
+ * Dispatch thread used for binder calls into wallpaper engine, so they never block UI thread
+ */
+public final class WallpaperThreads {
+    private static HandlerThread dispatchThread;
+    private static Handler mainHandler;
+    private static Choreographer choreographer;
+
+    private WallpaperThreads() {
+    }
+
+    /**
+     * Get looper of dispatch thread, thread started on first request
+     *
+     * @return dispatch thread looper
+     */
+    public static synchronized Looper getDispatchLooper() {
+        if (dispatchThread == null) {
+            dispatchThread = new HandlerThread("WallpaperDispatch", Process.THREAD_PRIORITY_DISPLAY);
+            dispatchThread.start();
+        }
+        return dispatchThread.getLooper();
+    }
+
+    /**
+     * Get handler of main thread
+     *
+     * @return main thread handler
+     */
+    public static synchronized Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    /**
+     * Get choreographer of main thread, Choreographer is bound to thread, so first call must be made from UI thread
+     *
+     * @return main thread choreographer
+     */
+    public static synchronized Choreographer getChoreographer() {
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+        }
+        return choreographer;
+    }
+}
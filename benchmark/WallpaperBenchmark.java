@@ -0,0 +1,804 @@
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.content.pm.ServiceInfo;
+import android.content.res.Resources;
+import android.graphics.Rect;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.service.wallpaper.IWallpaperConnection;
+import android.service.wallpaper.IWallpaperEngine;
+import android.service.wallpaper.IWallpaperService;
+import android.view.MotionEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Off-device benchmark of Live Wallpaper Manager hot paths
+ * <p>
+ * Runs on plain JVM against android.* stand-ins from benchmark/stubs, every benchmark has warmup and
+ * measurement iterations and reports time per operation
+ * Catalogs of 10, 100 and 1000 synthetic watch faces are generated in memory and served by fake PackageManager,
+ * wallpaper services and engines are local binders which attach and show engine immediately
+ * Measured time is cost of library code and thread hops, not of PackageManager, XML parsing or engine rendering
+ * <p>
+ * Usage: benchmark/run.sh [iterations]
+ */
+public class WallpaperBenchmark {
+    private static final int[] CATALOG_SIZES = {10, 100, 1000};
+    private static final int THUMBNAIL_SIZE = 128;
+    private static int iterations = 10;
+    private static File workDirectory;
+    private static volatile Object blackhole;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            iterations = Integer.parseInt(args[0]);
+        }
+        workDirectory = Files.createTempDirectory("wallpaper-benchmark").toFile();
+        System.out.println("Benchmark                              Faces        ns/op       ops/s");
+        for (int faces : CATALOG_SIZES) {
+            SyntheticCatalog catalog = new SyntheticCatalog(faces);
+            run("snapshot.write (cold load)", faces, new SnapshotWrite(catalog));
+            run("snapshot.read (warm load)", faces, new SnapshotRead(catalog));
+            run("loader.sort.loadLabel", faces, new LabelSort(catalog, false));
+            run("loader.sort.collationKeys", faces, new LabelSort(catalog, true));
+            run("index.search", faces, new LabelSearch(catalog));
+            run("thumbnail.put", faces, new ThumbnailPut(catalog));
+            run("thumbnail.get (mapped)", faces, new ThumbnailGet(catalog));
+            run("loader.execute (cold)", faces, new LoaderLoad(catalog, false, false));
+            run("loader.execute (cold, parallel)", faces, new LoaderLoad(catalog, false, true));
+            run("loader.execute (warm)", faces, new LoaderLoad(catalog, true, false));
+        }
+        run("connection.apply (same component)", 1, new ConnectionApply(ConnectionApply.SAME));
+        run("connection.apply (switch)", 1, new ConnectionApply(ConnectionApply.SWITCH));
+        run("connection.apply (prewarmed switch)", 1, new ConnectionApply(ConnectionApply.PREWARMED));
+        run("touch.forward (per event)", 1, new TouchForward());
+        run("metrics.record (per touch event)", 1, new MetricsRecord());
+        deleteRecursive(workDirectory);
+    }
+
+    /**
+     * Run benchmark with warmup, report mean time of measured iterations
+     */
+    private static void run(String name, int faces, Benchmark benchmark) throws IOException {
+        benchmark.setUp();
+        for (int i = 0; i < iterations; i++) {
+            benchmark.run();
+        }
+        benchmark.untimed = 0;
+        long operations = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operations += benchmark.run();
+        }
+        long elapsed = System.nanoTime() - start - benchmark.untimed;
+        benchmark.tearDown();
+        double nanosPerOperation = (double) elapsed / Math.max(1, operations);
+        System.out.println(String.format(Locale.US, "%-38s %5d %12.1f %11.0f", name, faces, nanosPerOperation, 1e9 / nanosPerOperation));
+    }
+
+    private static void deleteRecursive(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursive(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Run task on main looper and wait until it finished
+     */
+    private static void runOnMainThread(final Runnable runnable) {
+        final CountDownLatch done = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                done.countDown();
+            }
+        });
+        await(done);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Single benchmark, run() returns count of operations done
+     * Time spent in preparation inside run() is added to untimed and excluded from result
+     */
+    private abstract static class Benchmark {
+        long untimed;
+
+        void setUp() throws IOException {
+        }
+
+        abstract long run() throws IOException;
+
+        void tearDown() {
+        }
+    }
+
+    /**
+     * Synthetic watch face catalog, packages ship several faces like vendor APKs do
+     */
+    private static class SyntheticCatalog {
+        final List<WallpaperSnapshot.PackageRecord> packages = new ArrayList<>();
+        final List<String> labels = new ArrayList<>();
+        final int faces;
+
+        SyntheticCatalog(int faces) {
+            this.faces = faces;
+            Random random = new Random(faces);
+            int face = 0;
+            for (int p = 0; face < faces; p++) {
+                String packageName = "com.vendor" + p + ".watchfaces";
+                List<WallpaperSnapshot.ServiceRecord> services = new ArrayList<>();
+                for (int s = 0; s < 1 + random.nextInt(8) && face < faces; s++, face++) {
+                    String label = "Face " + Integer.toString(random.nextInt(1 << 20), 36) + " " + face;
+                    labels.add(label);
+                    services.add(new WallpaperSnapshot.ServiceRecord(packageName + ".Face" + s, label, packageName + ".CONFIG", "", 0x7f080000 + s));
+                }
+                packages.add(new WallpaperSnapshot.PackageRecord(packageName, p, 1600000000000L + p, services));
+            }
+        }
+
+        WallpaperSnapshot toSnapshot() {
+            WallpaperSnapshot snapshot = new WallpaperSnapshot("en-US");
+            for (WallpaperSnapshot.PackageRecord record : packages) {
+                snapshot.put(record);
+            }
+            return snapshot;
+        }
+    }
+
+    private static class SnapshotWrite extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private final File file = new File(workDirectory, "write.bin");
+
+        SnapshotWrite(SyntheticCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        long run() {
+            catalog.toSnapshot().write(file);
+            return 1;
+        }
+    }
+
+    /**
+     * Warm start: read snapshot and validate every installed service against it
+     */
+    private static class SnapshotRead extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private final File file = new File(workDirectory, "read.bin");
+
+        SnapshotRead(SyntheticCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        void setUp() {
+            catalog.toSnapshot().write(file);
+        }
+
+        @Override
+        long run() {
+            WallpaperSnapshot snapshot = WallpaperSnapshot.read(file, "en-US");
+            Set<String> installed = new HashSet<>();
+            for (WallpaperSnapshot.PackageRecord installedPackage : catalog.packages) {
+                WallpaperSnapshot.PackageRecord record = snapshot.getFresh(installedPackage.packageName, installedPackage.versionCode, installedPackage.lastUpdateTime);
+                for (WallpaperSnapshot.ServiceRecord service : installedPackage.services) {
+                    blackhole = record.find(service.serviceName);
+                }
+                installed.add(installedPackage.packageName);
+            }
+            snapshot.retain(installed);
+            return 1;
+        }
+    }
+
+    /**
+     * Loader sort, label resolution simulated by copying label on every comparison,
+     * compared with LabelIndex which resolves every label into CollationKey once
+     */
+    private static class LabelSort extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private final boolean cached;
+
+        LabelSort(SyntheticCatalog catalog, boolean cached) {
+            this.catalog = catalog;
+            this.cached = cached;
+        }
+
+        @Override
+        long run() {
+            if (cached) {
+                LabelIndex<Integer> index = new LabelIndex<>();
+                List<Integer> values = new ArrayList<>();
+                for (int i = 0; i < catalog.faces; i++) {
+                    values.add(i);
+                }
+                index.addAll(catalog.labels, values);
+                blackhole = index;
+                return 1;
+            }
+            final Collator collator = Collator.getInstance();
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < catalog.faces; i++) {
+                order.add(i);
+            }
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer t1, Integer t2) {
+                    return collator.compare(loadLabel(t1), loadLabel(t2));
+                }
+            });
+            blackhole = order;
+            return 1;
+        }
+
+        private String loadLabel(int index) {
+            return new StringBuilder(catalog.labels.get(index)).toString();
+        }
+    }
+
+    /**
+     * Interactive filtering of sorted catalog
+     */
+    private static class LabelSearch extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private final LabelIndex<String> index = new LabelIndex<>();
+
+        LabelSearch(SyntheticCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        void setUp() {
+            index.addAll(catalog.labels, catalog.labels);
+        }
+
+        @Override
+        long run() {
+            blackhole = index.searchPrefix("face");
+            blackhole = index.search("1");
+            return 2;
+        }
+    }
+
+    private static class ThumbnailPut extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private ThumbnailStore store;
+        private ByteBuffer pixels;
+        private long version;
+
+        ThumbnailPut(SyntheticCatalog catalog) {
+            this.catalog = catalog;
+        }
+
+        @Override
+        void setUp() {
+            store = new ThumbnailStore(new File(workDirectory, "put" + catalog.faces), Long.MAX_VALUE);
+            pixels = ByteBuffer.allocate(THUMBNAIL_SIZE * THUMBNAIL_SIZE * 4);
+        }
+
+        @Override
+        long run() {
+            version++;
+            for (int i = 0; i < catalog.faces; i++) {
+                pixels.clear();
+                store.put("face" + i, version, THUMBNAIL_SIZE, THUMBNAIL_SIZE, pixels);
+            }
+            return catalog.faces;
+        }
+
+        @Override
+        void tearDown() {
+            store.clear();
+        }
+    }
+
+    /**
+     * First screen of picker: open store, read all thumbnails through mapping
+     */
+    private static class ThumbnailGet extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private final File directory;
+        private final byte[] target = new byte[THUMBNAIL_SIZE * THUMBNAIL_SIZE * 4];
+
+        ThumbnailGet(SyntheticCatalog catalog) {
+            this.catalog = catalog;
+            this.directory = new File(workDirectory, "get" + catalog.faces);
+        }
+
+        @Override
+        void setUp() {
+            ThumbnailStore store = new ThumbnailStore(directory, Long.MAX_VALUE);
+            for (int i = 0; i < catalog.faces; i++) {
+                store.put("face" + i, 1, THUMBNAIL_SIZE, THUMBNAIL_SIZE, ByteBuffer.allocate(target.length));
+            }
+        }
+
+        @Override
+        long run() {
+            ThumbnailStore store = new ThumbnailStore(directory, Long.MAX_VALUE);
+            for (int i = 0; i < catalog.faces; i++) {
+                store.get("face" + i, 1).pixels.get(target);
+            }
+            return catalog.faces;
+        }
+    }
+
+    /**
+     * Full WallpaperLoader run: resolve, labels, snapshot, sort, item creation and batch delivery
+     * Cold load parses every service, warm load validates snapshot written by previous run
+     */
+    private static class LoaderLoad extends Benchmark {
+        private final SyntheticCatalog catalog;
+        private final boolean warm;
+        private final boolean parallel;
+        private FakeDevice device;
+        private int delivered;
+
+        LoaderLoad(SyntheticCatalog catalog, boolean warm, boolean parallel) {
+            this.catalog = catalog;
+            this.warm = warm;
+            this.parallel = parallel;
+        }
+
+        @Override
+        void setUp() {
+            device = new FakeDevice(catalog, new File(workDirectory, "loader" + catalog.faces));
+        }
+
+        @Override
+        long run() {
+            if (!warm) {
+                device.clearSnapshots();
+            }
+            delivered = 0;
+            WallpaperLoader loader = new WallpaperLoader(device, WallpaperQuery.watchFaces(), new WallpaperLoader.IWallpaperLoader() {
+                @Override
+                public void onWallpaperLoaded(LiveWallpaperItem liveWallpaperItem) {
+                    delivered++;
+                }
+            });
+            loader.setParallel(parallel);
+            loader.execute();
+            if (delivered != catalog.faces) {
+                throw new IllegalStateException("Loaded " + delivered + " of " + catalog.faces + " faces");
+            }
+            return 1;
+        }
+    }
+
+    /**
+     * Latency from WallpaperConnectionManager.apply() on main thread until engine reported shown
+     * Switch binds new engine and tears down previous one, prewarmed switch only changes visibility
+     */
+    private static class ConnectionApply extends Benchmark {
+        static final int SAME = 0;
+        static final int SWITCH = 1;
+        static final int PREWARMED = 2;
+        private static final int APPLIES = 100;
+
+        private final int mode;
+        private final ComponentName[] components = new ComponentName[2];
+        private FakeDevice device;
+        private WallpaperConnectionManager manager;
+        private int applied;
+
+        ConnectionApply(int mode) {
+            this.mode = mode;
+        }
+
+        @Override
+        void setUp() {
+            SyntheticCatalog catalog = new SyntheticCatalog(2);
+            device = new FakeDevice(catalog, new File(workDirectory, "connection" + mode));
+            for (int i = 0; i < components.length; i++) {
+                WallpaperSnapshot.PackageRecord record = catalog.packages.get(0);
+                components[i] = new ComponentName(record.packageName, record.services.get(i % record.services.size()).serviceName);
+            }
+            manager = new WallpaperConnectionManager(device, new Binder());
+        }
+
+        @Override
+        long run() {
+            for (int i = 0; i < APPLIES; i++) {
+                final ComponentName component = mode == SAME ? components[0] : components[applied++ % components.length];
+                if (mode == PREWARMED) {
+                    long prewarmStart = System.nanoTime();
+                    final CountDownLatch prewarmed = new CountDownLatch(1);
+                    runOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            manager.prewarm(component);
+                            awaitShown(manager.getPrewarmedConnection(), prewarmed);
+                        }
+                    });
+                    await(prewarmed);
+                    untimed += System.nanoTime() - prewarmStart;
+                }
+                final CountDownLatch shown = new CountDownLatch(1);
+                runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        awaitShown(manager.apply(component), shown);
+                    }
+                });
+                await(shown);
+            }
+            return APPLIES;
+        }
+
+        @Override
+        void tearDown() {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    manager.release();
+                }
+            });
+        }
+
+        /**
+         * Count down latch when engine of connection shown, connection is null if component is already active
+         */
+        private static void awaitShown(WallpaperConnection connection, final CountDownLatch shown) {
+            if (connection == null || connection.isShown()) {
+                shown.countDown();
+                return;
+            }
+            connection.addListener(new WallpaperConnection.Listener() {
+                @Override
+                public void onEngineAttached(WallpaperConnection connection) {
+                }
+
+                @Override
+                public void onEngineShown(WallpaperConnection connection) {
+                    connection.removeListener(this);
+                    shown.countDown();
+                }
+
+                @Override
+                public void onEngineDied(WallpaperConnection connection) {
+                }
+
+                @Override
+                public void onRecoveryFailed(WallpaperConnection connection) {
+                }
+            });
+        }
+    }
+
+    /**
+     * Cost of TouchForwarder.forward() on main thread for gestures of down, moves and up
+     * Dispatch thread drained after every run outside of measured time
+     */
+    private static class TouchForward extends Benchmark {
+        private static final int GESTURES = 1000;
+        private static final int MOVES = 10;
+
+        private final List<MotionEvent> events = new ArrayList<>();
+        private FakeDevice device;
+        private WallpaperConnectionManager manager;
+        private TouchForwarder touchForwarder;
+
+        @Override
+        void setUp() {
+            device = new FakeDevice(new SyntheticCatalog(1), new File(workDirectory, "touch"));
+            final SyntheticCatalog catalog = device.catalog;
+            final CountDownLatch shown = new CountDownLatch(1);
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    manager = new WallpaperConnectionManager(device, new Binder());
+                    WallpaperSnapshot.PackageRecord record = catalog.packages.get(0);
+                    ConnectionApply.awaitShown(manager.apply(new ComponentName(record.packageName, record.services.get(0).serviceName)), shown);
+                    touchForwarder = new TouchForwarder();
+                    touchForwarder.setConnection(manager.getActiveConnection());
+                }
+            });
+            await(shown);
+            long time = SystemClock.uptimeMillis();
+            events.add(MotionEvent.obtain(time, time, MotionEvent.ACTION_DOWN, 100, 100, 0));
+            for (int i = 1; i <= MOVES; i++) {
+                events.add(MotionEvent.obtain(time, time + i * 8, MotionEvent.ACTION_MOVE, 100 + i * 10, 100, 0));
+            }
+            events.add(MotionEvent.obtain(time, time + MOVES * 8 + 8, MotionEvent.ACTION_UP, 100 + MOVES * 10, 100, 0));
+        }
+
+        @Override
+        long run() {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < GESTURES; i++) {
+                        for (MotionEvent event : events) {
+                            touchForwarder.forward(event);
+                        }
+                    }
+                }
+            });
+            long drainStart = System.nanoTime();
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    touchForwarder.doFrame(System.nanoTime());
+                }
+            });
+            final CountDownLatch drained = new CountDownLatch(1);
+            new Handler(WallpaperThreads.getDispatchLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    drained.countDown();
+                }
+            });
+            await(drained);
+            untimed += System.nanoTime() - drainStart;
+            return GESTURES * events.size();
+        }
+
+        @Override
+        void tearDown() {
+            runOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    touchForwarder.release();
+                    manager.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Fake device: Context with PackageManager serving synthetic catalog and bindable wallpaper services
+     */
+    private static class FakeDevice extends Context {
+        private static final int LABEL_RESOURCE = 0x7f0a0000;
+        private static final ExecutorService BINDER_THREAD = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Binder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        final SyntheticCatalog catalog;
+        private final File cacheDirectory;
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+        private final Map<String, WallpaperSnapshot.PackageRecord> packages = new HashMap<>();
+        private final PackageManager packageManager = new PackageManager() {
+            @Override
+            public List<ResolveInfo> queryIntentServices(Intent intent, int flags) {
+                List<ResolveInfo> list = new ArrayList<>();
+                for (WallpaperSnapshot.PackageRecord record : catalog.packages) {
+                    if (intent.getPackage() != null && !intent.getPackage().equals(record.packageName)) {
+                        continue;
+                    }
+                    for (int i = 0; i < record.services.size(); i++) {
+                        list.add(createResolveInfo(record, record.services.get(i), i));
+                    }
+                }
+                return list;
+            }
+
+            @Override
+            public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+                WallpaperSnapshot.PackageRecord record = packages.get(packageName);
+                if (record == null) {
+                    throw new NameNotFoundException(packageName);
+                }
+                PackageInfo packageInfo = new PackageInfo();
+                packageInfo.packageName = packageName;
+                packageInfo.versionCode = (int) record.versionCode;
+                packageInfo.lastUpdateTime = record.lastUpdateTime;
+                return packageInfo;
+            }
+
+            @Override
+            public Resources getResourcesForApplication(String packageName) throws NameNotFoundException {
+                return getPackageResources(packageName);
+            }
+
+            @Override
+            public CharSequence getText(String packageName, int resId, ApplicationInfo applicationInfo) {
+                try {
+                    return getPackageResources(packageName).getText(resId);
+                } catch (PackageManager.NameNotFoundException | Resources.NotFoundException e) {
+                    return null;
+                }
+            }
+        };
+
+        FakeDevice(SyntheticCatalog catalog, File cacheDirectory) {
+            this.catalog = catalog;
+            this.cacheDirectory = cacheDirectory;
+            cacheDirectory.mkdirs();
+            for (WallpaperSnapshot.PackageRecord record : catalog.packages) {
+                packages.put(record.packageName, record);
+            }
+        }
+
+        void clearSnapshots() {
+            File[] files = cacheDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().startsWith("wallpaper_catalog_")) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public PackageManager getPackageManager() {
+            return packageManager;
+        }
+
+        @Override
+        public File getCacheDir() {
+            return cacheDirectory;
+        }
+
+        @Override
+        public Context createPackageContext(final String packageName, int flags) throws PackageManager.NameNotFoundException {
+            final Resources resources = getPackageResources(packageName);
+            return new Context() {
+                @Override
+                public Resources getResources() {
+                    return resources;
+                }
+            };
+        }
+
+        /**
+         * Bind service like system does: connection delivered later on main thread
+         */
+        @Override
+        public boolean bindService(Intent service, final ServiceConnection connection, int flags) {
+            final ComponentName component = service.getComponent();
+            if (component == null || !packages.containsKey(component.getPackageName())) {
+                return false;
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    connection.onServiceConnected(component, new FakeWallpaperService());
+                }
+            });
+            return true;
+        }
+
+        private Resources getPackageResources(String packageName) throws PackageManager.NameNotFoundException {
+            final WallpaperSnapshot.PackageRecord record = packages.get(packageName);
+            if (record == null) {
+                throw new PackageManager.NameNotFoundException(packageName);
+            }
+            return new Resources() {
+                @Override
+                public CharSequence getText(int id) throws NotFoundException {
+                    int index = id - LABEL_RESOURCE;
+                    if (index < 0 || index >= record.services.size()) {
+                        throw new NotFoundException("Resource ID #0x" + Integer.toHexString(id));
+                    }
+                    return record.services.get(index).label;
+                }
+            };
+        }
+
+        /**
+         * Service label is resource of service package, so loader goes through package context like for real APKs
+         */
+        private static ResolveInfo createResolveInfo(WallpaperSnapshot.PackageRecord record, WallpaperSnapshot.ServiceRecord service, int index) {
+            ResolveInfo resolveInfo = new ResolveInfo();
+            resolveInfo.serviceInfo = new ServiceInfo();
+            resolveInfo.serviceInfo.packageName = record.packageName;
+            resolveInfo.serviceInfo.name = service.serviceName;
+            resolveInfo.serviceInfo.labelRes = LABEL_RESOURCE + index;
+            resolveInfo.serviceInfo.metaData = new Bundle();
+            resolveInfo.serviceInfo.metaData.putInt(LiveWallpaperManager.WATCHFACE_PREVIEW, service.previewId);
+            resolveInfo.serviceInfo.metaData.putString(LiveWallpaperManager.WATCHFACE_CONFIG, service.configAction);
+            return resolveInfo;
+        }
+
+        /**
+         * Wallpaper service which attaches and shows engine on binder thread, like oneway attach() on device
+         */
+        private static class FakeWallpaperService extends IWallpaperService.Stub {
+            @Override
+            public void attach(final IWallpaperConnection connection, IBinder windowToken, int windowType, boolean isPreview, int reqWidth, int reqHeight, Rect padding) {
+                BINDER_THREAD.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        FakeWallpaperEngine engine = new FakeWallpaperEngine();
+                        try {
+                            connection.attachEngine(engine);
+                            connection.engineShown(engine);
+                        } catch (RemoteException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private static class FakeWallpaperEngine extends IWallpaperEngine.Stub {
+        private final AtomicInteger dispatched = new AtomicInteger();
+
+        @Override
+        public void setDesiredSize(int width, int height) {
+        }
+
+        @Override
+        public void setVisibility(boolean visible) {
+        }
+
+        @Override
+        public void dispatchPointer(MotionEvent event) {
+            dispatched.incrementAndGet();
+        }
+
+        @Override
+        public void dispatchWallpaperCommand(String action, int x, int y, int z, Bundle extras) {
+            dispatched.incrementAndGet();
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private static class MetricsRecord extends Benchmark {
+        @Override
+        long run() {
+            for (int i = 0; i < 100000; i++) {
+                long start = WallpaperMetrics.start();
+                WallpaperMetrics.stop(WallpaperMetrics.TOUCH_POINTER, start);
+            }
+            return 100000;
+        }
+    }
+}
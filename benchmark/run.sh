@@ -0,0 +1,16 @@
+#!/bin/sh
+# Compile and run off-device benchmark on plain JVM
+# Library sources belong to package com.liner.linerlauncher.LW, they are compiled with package declaration
+# against android.* stand-ins from benchmark/stubs
+# Usage: benchmark/run.sh [iterations]
+set -e
+cd "$(dirname "$0")/.."
+PACKAGE=com.liner.linerlauncher.LW
+SOURCES=benchmark/build/src/$(echo $PACKAGE | tr . /)
+rm -rf benchmark/build
+mkdir -p "$SOURCES" benchmark/build/classes
+for source in *.java benchmark/WallpaperBenchmark.java; do
+    { echo "package $PACKAGE;"; cat "$source"; } > "$SOURCES/$(basename "$source")"
+done
+javac -nowarn -encoding UTF-8 -d benchmark/build/classes $(find benchmark/stubs -name '*.java') "$SOURCES"/*.java
+java -cp benchmark/build/classes $PACKAGE.WallpaperBenchmark "$@"
@@ -0,0 +1,34 @@
+package android.app;
+
+public class Activity extends android.content.Context {
+    public android.view.Window getWindow() {
+        return null;
+    }
+
+    public android.view.WindowManager getWindowManager() {
+        return null;
+    }
+
+    public android.app.Application getApplication() {
+        return null;
+    }
+
+    public boolean isChangingConfigurations() {
+        return false;
+    }
+
+    public boolean isFinishing() {
+        return false;
+    }
+
+    public boolean isDestroyed() {
+        return false;
+    }
+
+    public int getTaskId() {
+        return -1;
+    }
+
+    public void runOnUiThread(Runnable r) {
+    }
+}
@@ -0,0 +1,11 @@
+package android.app;
+
+public class ActivityManager {
+    public boolean isLowRamDevice() {
+        return false;
+    }
+
+    public int getMemoryClass() {
+        return 0;
+    }
+}
@@ -0,0 +1,19 @@
+package android.app;
+
+public class Application extends android.content.Context {
+    public interface ActivityLifecycleCallbacks {
+        void onActivityCreated(android.app.Activity a, android.os.Bundle b);
+        void onActivityStarted(android.app.Activity a);
+        void onActivityResumed(android.app.Activity a);
+        void onActivityPaused(android.app.Activity a);
+        void onActivityStopped(android.app.Activity a);
+        void onActivitySaveInstanceState(android.app.Activity a, android.os.Bundle b);
+        void onActivityDestroyed(android.app.Activity a);
+    }
+
+    public void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks c) {
+    }
+
+    public void unregisterActivityLifecycleCallbacks(ActivityLifecycleCallbacks c) {
+    }
+}
@@ -0,0 +1,5 @@
+package android.app;
+
+public interface IWallpaperManager {
+    void setWallpaperComponent(android.content.ComponentName n) throws android.os.RemoteException;
+}
@@ -0,0 +1,38 @@
+package android.app;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.ResolveInfo;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * Stand-in of android.app.WallpaperInfo for off-device benchmark
+ * <p>
+ * Wallpaper XML of foreign package is not available off device, so nothing is parsed
+ */
+public final class WallpaperInfo {
+    private final ResolveInfo service;
+
+    public WallpaperInfo(Context context, ResolveInfo service) throws XmlPullParserException, IOException {
+        this.service = service;
+    }
+
+    public String getPackageName() {
+        return service.serviceInfo.packageName;
+    }
+
+    public String getServiceName() {
+        return service.serviceInfo.name;
+    }
+
+    public ComponentName getComponent() {
+        return new ComponentName(getPackageName(), getServiceName());
+    }
+
+    public String getSettingsActivity() {
+        return null;
+    }
+}
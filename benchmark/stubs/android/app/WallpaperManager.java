@@ -0,0 +1,19 @@
+package android.app;
+
+public class WallpaperManager {
+    public static final String COMMAND_TAP = "android.wallpaper.tap";
+
+    public static WallpaperManager getInstance(android.content.Context c) {
+        return null;
+    }
+
+    public void setWallpaperOffsetSteps(float x, float y) {
+    }
+
+    public void setWallpaperOffsets(android.os.IBinder t, float x, float y) {
+    }
+
+    public android.app.WallpaperInfo getWallpaperInfo() {
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+package android.content;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Stand-in of android.content.ComponentName for off-device benchmark
+ */
+public final class ComponentName implements Parcelable {
+    private final String packageName;
+    private final String className;
+
+    public ComponentName(String packageName, String className) {
+        this.packageName = packageName;
+        this.className = className;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String flattenToShortString() {
+        return className.startsWith(packageName + ".")
+                ? packageName + "/" + className.substring(packageName.length())
+                : packageName + "/" + className;
+    }
+
+    @Override
+    public void writeToParcel(Parcel parcel, int flags) {
+        parcel.writeString(packageName);
+        parcel.writeString(className);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ComponentName)) return false;
+        ComponentName that = (ComponentName) o;
+        return packageName.equals(that.packageName) && className.equals(that.className);
+    }
+
+    @Override
+    public int hashCode() {
+        return packageName.hashCode() + className.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ComponentInfo{" + packageName + "/" + className + "}";
+    }
+}
@@ -0,0 +1,66 @@
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.os.Looper;
+
+import java.io.File;
+
+/**
+ * Stand-in of android.content.Context for off-device benchmark, benchmark overrides what it needs
+ */
+public class Context {
+    public static final int BIND_AUTO_CREATE = 0x0001;
+    public static final int CONTEXT_IGNORE_SECURITY = 0x0002;
+    public static final String ACTIVITY_SERVICE = "activity";
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public String getPackageName() {
+        return null;
+    }
+
+    public PackageManager getPackageManager() {
+        return null;
+    }
+
+    public Resources getResources() {
+        return Resources.getSystem();
+    }
+
+    public Context createPackageContext(String packageName, int flags) throws PackageManager.NameNotFoundException {
+        throw new PackageManager.NameNotFoundException(packageName);
+    }
+
+    public File getCacheDir() {
+        return null;
+    }
+
+    public File getFilesDir() {
+        return null;
+    }
+
+    public Looper getMainLooper() {
+        return Looper.getMainLooper();
+    }
+
+    public Object getSystemService(String name) {
+        return null;
+    }
+
+    public boolean bindService(Intent service, ServiceConnection connection, int flags) {
+        return false;
+    }
+
+    public void unbindService(ServiceConnection connection) {
+    }
+
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return null;
+    }
+
+    public void unregisterReceiver(BroadcastReceiver receiver) {
+    }
+}
@@ -0,0 +1,101 @@
+package android.content;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Stand-in of android.content.Intent for off-device benchmark
+ */
+public class Intent implements Parcelable {
+    public static final String CATEGORY_DEFAULT = "android.intent.category.DEFAULT";
+    public static final String ACTION_PACKAGE_ADDED = "android.intent.action.PACKAGE_ADDED";
+    public static final String ACTION_PACKAGE_REMOVED = "android.intent.action.PACKAGE_REMOVED";
+    public static final String ACTION_PACKAGE_REPLACED = "android.intent.action.PACKAGE_REPLACED";
+    public static final String ACTION_PACKAGE_CHANGED = "android.intent.action.PACKAGE_CHANGED";
+    public static final String EXTRA_REPLACING = "android.intent.extra.REPLACING";
+
+    private String action;
+    private String packageName;
+    private ComponentName component;
+    private Set<String> categories;
+    private Uri data;
+    private final Bundle extras = new Bundle();
+
+    public Intent() {
+    }
+
+    public Intent(String action) {
+        this.action = action;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public Intent addCategory(String category) {
+        if (categories == null) {
+            categories = new HashSet<>();
+        }
+        categories.add(category);
+        return this;
+    }
+
+    public boolean hasCategory(String category) {
+        return categories != null && categories.contains(category);
+    }
+
+    public Intent setPackage(String packageName) {
+        this.packageName = packageName;
+        return this;
+    }
+
+    public String getPackage() {
+        return packageName;
+    }
+
+    public Intent setComponent(ComponentName component) {
+        this.component = component;
+        return this;
+    }
+
+    public Intent setClassName(String packageName, String className) {
+        return setComponent(new ComponentName(packageName, className));
+    }
+
+    public ComponentName getComponent() {
+        return component;
+    }
+
+    public Intent setData(Uri data) {
+        this.data = data;
+        return this;
+    }
+
+    public Uri getData() {
+        return data;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        extras.putBoolean(name, value);
+        return this;
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        return extras.containsKey(name) ? extras.getBoolean(name) : defaultValue;
+    }
+
+    @Override
+    public void writeToParcel(Parcel parcel, int flags) {
+        parcel.writeString(action);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+}
@@ -0,0 +1,23 @@
+package android.content;
+
+public class IntentFilter {
+    public IntentFilter() {
+    }
+
+    public IntentFilter(String a) {
+    }
+
+    public void addAction(String a) {
+    }
+
+    public void addDataScheme(String s) {
+    }
+
+    public final boolean hasCategory(String c) {
+        return false;
+    }
+
+    public final boolean hasAction(String a) {
+        return false;
+    }
+}
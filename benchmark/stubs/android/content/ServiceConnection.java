@@ -0,0 +1,6 @@
+package android.content;
+
+public interface ServiceConnection {
+    void onServiceConnected(ComponentName n, android.os.IBinder s);
+    void onServiceDisconnected(ComponentName n);
+}
@@ -0,0 +1,24 @@
+package android.content.pm;
+
+import android.os.Bundle;
+
+public class PackageItemInfo {
+    public String name;
+    public String packageName;
+    public int labelRes;
+    public CharSequence nonLocalizedLabel;
+    public Bundle metaData;
+
+    public CharSequence loadLabel(PackageManager packageManager) {
+        if (nonLocalizedLabel != null) {
+            return nonLocalizedLabel;
+        }
+        if (labelRes != 0) {
+            CharSequence label = packageManager.getText(packageName, labelRes, null);
+            if (label != null) {
+                return label;
+            }
+        }
+        return name != null ? name : packageName;
+    }
+}
@@ -0,0 +1,31 @@
+package android.content.pm;
+
+import android.content.Intent;
+import android.content.res.Resources;
+
+import java.util.List;
+
+/**
+ * Stand-in of android.content.pm.PackageManager for off-device benchmark
+ */
+public abstract class PackageManager {
+    public static final int GET_RESOLVED_FILTER = 0x00000040;
+    public static final int GET_META_DATA = 0x00000080;
+
+    public abstract List<ResolveInfo> queryIntentServices(Intent intent, int flags);
+
+    public abstract PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException;
+
+    public abstract Resources getResourcesForApplication(String packageName) throws NameNotFoundException;
+
+    public abstract CharSequence getText(String packageName, int resId, ApplicationInfo applicationInfo);
+
+    public static class NameNotFoundException extends Exception {
+        public NameNotFoundException() {
+        }
+
+        public NameNotFoundException(String name) {
+            super(name);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package android.content.pm;
+
+import android.content.IntentFilter;
+
+public class ResolveInfo {
+    public ServiceInfo serviceInfo;
+    public IntentFilter filter;
+    public int labelRes;
+    public CharSequence nonLocalizedLabel;
+    public String resolvePackageName;
+
+    public CharSequence loadLabel(PackageManager packageManager) {
+        if (nonLocalizedLabel != null) {
+            return nonLocalizedLabel;
+        }
+        if (labelRes != 0) {
+            CharSequence label = packageManager.getText(serviceInfo.packageName, labelRes, null);
+            if (label != null) {
+                return label;
+            }
+        }
+        return serviceInfo.loadLabel(packageManager);
+    }
+}
@@ -0,0 +1,43 @@
+package android.content.res;
+
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+
+/**
+ * Stand-in of android.content.res.Resources for off-device benchmark, system display is 1080x1920
+ */
+public class Resources {
+    private static final Resources SYSTEM = new Resources();
+
+    private final DisplayMetrics displayMetrics = new DisplayMetrics();
+
+    public Resources() {
+        displayMetrics.widthPixels = 1080;
+        displayMetrics.heightPixels = 1920;
+    }
+
+    public static Resources getSystem() {
+        return SYSTEM;
+    }
+
+    public DisplayMetrics getDisplayMetrics() {
+        return displayMetrics;
+    }
+
+    public CharSequence getText(int id) throws NotFoundException {
+        throw new NotFoundException("Resource ID #0x" + Integer.toHexString(id));
+    }
+
+    public Drawable getDrawable(int id) throws NotFoundException {
+        throw new NotFoundException("Resource ID #0x" + Integer.toHexString(id));
+    }
+
+    public static class NotFoundException extends RuntimeException {
+        public NotFoundException() {
+        }
+
+        public NotFoundException(String name) {
+            super(name);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package android.graphics;
+
+public final class Bitmap {
+    public enum Config {
+        ARGB_8888, RGB_565
+    }
+
+    public static Bitmap createBitmap(int w, int h, Config c) {
+        return null;
+    }
+
+    public static Bitmap createScaledBitmap(Bitmap b, int w, int h, boolean f) {
+        return null;
+    }
+
+    public int getWidth() {
+        return 0;
+    }
+
+    public int getHeight() {
+        return 0;
+    }
+
+    public int getByteCount() {
+        return 0;
+    }
+
+    public int getAllocationByteCount() {
+        return 0;
+    }
+
+    public void recycle() {
+    }
+
+    public void copyPixelsToBuffer(java.nio.Buffer b) {
+    }
+
+    public void copyPixelsFromBuffer(java.nio.Buffer b) {
+    }
+
+    public Config getConfig() {
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package android.graphics;
+
+public class BitmapFactory {
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public int outWidth;
+        public int outHeight;
+        public Bitmap.Config inPreferredConfig;
+    }
+
+    public static Bitmap decodeResource(android.content.res.Resources r, int id, Options o) {
+        return null;
+    }
+}
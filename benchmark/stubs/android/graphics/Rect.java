@@ -0,0 +1,6 @@
+package android.graphics;
+
+public class Rect {
+    public Rect(int a, int b, int c, int d) {
+    }
+}
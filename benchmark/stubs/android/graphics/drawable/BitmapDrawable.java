@@ -0,0 +1,13 @@
+package android.graphics.drawable;
+
+public class BitmapDrawable extends Drawable {
+    public BitmapDrawable(android.content.res.Resources r, android.graphics.Bitmap b) {
+    }
+
+    public void draw(android.graphics.Canvas c) {
+    }
+
+    public android.graphics.Bitmap getBitmap() {
+        return null;
+    }
+}
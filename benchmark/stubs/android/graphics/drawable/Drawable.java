@@ -0,0 +1,16 @@
+package android.graphics.drawable;
+
+public abstract class Drawable {
+    public void setBounds(int a, int b, int c, int d) {
+    }
+
+    public abstract void draw(android.graphics.Canvas c);
+
+    public int getIntrinsicWidth() {
+        return 0;
+    }
+
+    public int getIntrinsicHeight() {
+        return 0;
+    }
+}
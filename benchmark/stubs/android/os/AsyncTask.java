@@ -0,0 +1,69 @@
+package android.os;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Stand-in of android.os.AsyncTask for off-device benchmark
+ * <p>
+ * Task runs inline on calling thread and progress is delivered inline, so benchmark measures work of task
+ * without thread hops of real implementation
+ */
+public abstract class AsyncTask<Params, Progress, Result> {
+    public static final Executor THREAD_POOL_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private volatile boolean cancelled;
+
+    @SuppressWarnings("unchecked")
+    protected abstract Result doInBackground(Params... params);
+
+    protected void onPreExecute() {
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void onProgressUpdate(Progress... values) {
+    }
+
+    protected void onPostExecute(Result result) {
+    }
+
+    protected void onCancelled() {
+    }
+
+    @SafeVarargs
+    protected final void publishProgress(Progress... values) {
+        if (!cancelled) {
+            onProgressUpdate(values);
+        }
+    }
+
+    public final boolean isCancelled() {
+        return cancelled;
+    }
+
+    public final boolean cancel(boolean mayInterruptIfRunning) {
+        cancelled = true;
+        return true;
+    }
+
+    @SafeVarargs
+    public final AsyncTask<Params, Progress, Result> execute(Params... params) {
+        return executeOnExecutor(THREAD_POOL_EXECUTOR, params);
+    }
+
+    @SafeVarargs
+    public final AsyncTask<Params, Progress, Result> executeOnExecutor(Executor executor, Params... params) {
+        onPreExecute();
+        Result result = doInBackground(params);
+        if (cancelled) {
+            onCancelled();
+        } else {
+            onPostExecute(result);
+        }
+        return this;
+    }
+}
@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * Stand-in of android.os.Binder for off-device benchmark
+ * <p>
+ * Local binder never dies, so death links are accepted and never fired like on device
+ */
+public class Binder implements IBinder {
+    @Override
+    public void linkToDeath(DeathRecipient recipient, int flags) {
+    }
+
+    @Override
+    public boolean unlinkToDeath(DeathRecipient recipient, int flags) {
+        return true;
+    }
+
+    @Override
+    public boolean isBinderAlive() {
+        return true;
+    }
+}
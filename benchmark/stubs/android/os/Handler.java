@@ -0,0 +1,118 @@
+package android.os;
+
+/**
+ * Stand-in of android.os.Handler for off-device benchmark
+ */
+public class Handler {
+    private final Looper looper;
+    private final Callback callback;
+
+    public Handler() {
+        this(Looper.myLooper(), null);
+    }
+
+    public Handler(Looper looper) {
+        this(looper, null);
+    }
+
+    public Handler(Looper looper, Callback callback) {
+        if (looper == null) {
+            throw new RuntimeException("Can't create handler inside thread that has not called Looper.prepare()");
+        }
+        this.looper = looper;
+        this.callback = callback;
+    }
+
+    public void handleMessage(Message message) {
+    }
+
+    public void dispatchMessage(Message message) {
+        if (message.callback != null) {
+            message.callback.run();
+        } else if (callback == null || !callback.handleMessage(message)) {
+            handleMessage(message);
+        }
+    }
+
+    public final boolean post(Runnable runnable) {
+        return postDelayed(runnable, 0);
+    }
+
+    public final boolean postDelayed(Runnable runnable, long delayMillis) {
+        return postAtTime(runnable, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public final boolean postAtTime(Runnable runnable, long uptimeMillis) {
+        Message message = obtainMessage();
+        message.callback = runnable;
+        return looper.enqueue(message, uptimeMillis);
+    }
+
+    public final void removeCallbacks(Runnable runnable) {
+        looper.remove(this, 0, runnable, null);
+    }
+
+    public final Message obtainMessage() {
+        Message message = Message.obtain();
+        message.target = this;
+        return message;
+    }
+
+    public final Message obtainMessage(int what) {
+        return obtainMessage(what, 0, 0, null);
+    }
+
+    public final Message obtainMessage(int what, Object obj) {
+        return obtainMessage(what, 0, 0, obj);
+    }
+
+    public final Message obtainMessage(int what, int arg1, int arg2) {
+        return obtainMessage(what, arg1, arg2, null);
+    }
+
+    public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+        Message message = obtainMessage();
+        message.what = what;
+        message.arg1 = arg1;
+        message.arg2 = arg2;
+        message.obj = obj;
+        return message;
+    }
+
+    public final boolean sendMessage(Message message) {
+        return sendMessageDelayed(message, 0);
+    }
+
+    public final boolean sendMessageDelayed(Message message, long delayMillis) {
+        message.target = this;
+        return looper.enqueue(message, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+    }
+
+    public final boolean sendEmptyMessage(int what) {
+        return sendMessage(obtainMessage(what));
+    }
+
+    public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+        return sendMessageDelayed(obtainMessage(what), delayMillis);
+    }
+
+    public final void removeMessages(int what) {
+        looper.remove(this, what, null, null);
+    }
+
+    public final boolean hasMessages(int what) {
+        return looper.has(this, what);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        looper.removeAll(this);
+    }
+
+    public final Looper getLooper() {
+        return looper;
+    }
+
+    public interface Callback {
+        boolean handleMessage(Message message);
+    }
+}
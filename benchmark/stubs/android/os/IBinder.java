@@ -0,0 +1,13 @@
+package android.os;
+
+public interface IBinder {
+    void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException;
+
+    boolean unlinkToDeath(DeathRecipient recipient, int flags);
+
+    boolean isBinderAlive();
+
+    interface DeathRecipient {
+        void binderDied();
+    }
+}
@@ -0,0 +1,139 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in of android.os.Looper for off-device benchmark
+ * <p>
+ * Message queue ordered by delivery time, main looper runs on daemon thread started on first request
+ */
+public final class Looper {
+    private static final ThreadLocal<Looper> LOOPER = new ThreadLocal<>();
+    private static Looper mainLooper;
+
+    private final List<Message> queue = new ArrayList<>();
+    private final Thread thread;
+    private boolean quit;
+
+    private Looper() {
+        this.thread = Thread.currentThread();
+    }
+
+    public static void prepare() {
+        if (LOOPER.get() != null) {
+            throw new IllegalStateException("Only one Looper may be created per thread");
+        }
+        LOOPER.set(new Looper());
+    }
+
+    public static Looper myLooper() {
+        return LOOPER.get();
+    }
+
+    public static synchronized Looper getMainLooper() {
+        if (mainLooper == null) {
+            HandlerThread mainThread = new HandlerThread("main");
+            mainThread.start();
+            mainLooper = mainThread.getLooper();
+        }
+        return mainLooper;
+    }
+
+    public static void loop() {
+        Looper looper = myLooper();
+        if (looper == null) {
+            throw new IllegalStateException("No Looper; Looper.prepare() wasn't called on this thread");
+        }
+        Message message;
+        while ((message = looper.next()) != null) {
+            message.target.dispatchMessage(message);
+        }
+    }
+
+    public Thread getThread() {
+        return thread;
+    }
+
+    public void quitSafely() {
+        synchronized (queue) {
+            quit = true;
+            queue.notifyAll();
+        }
+    }
+
+    boolean enqueue(Message message, long when) {
+        synchronized (queue) {
+            if (quit) {
+                return false;
+            }
+            message.when = when;
+            int index = queue.size();
+            while (index > 0 && queue.get(index - 1).when > when) {
+                index--;
+            }
+            queue.add(index, message);
+            queue.notifyAll();
+            return true;
+        }
+    }
+
+    boolean remove(Handler handler, int what, Runnable callback, Object object) {
+        boolean removed = false;
+        synchronized (queue) {
+            for (int i = queue.size() - 1; i >= 0; i--) {
+                Message message = queue.get(i);
+                if (message.target == handler
+                        && (callback != null ? callback.equals(message.callback) : message.callback == null && message.what == what)
+                        && (object == null || message.obj == object)) {
+                    queue.remove(i);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    boolean removeAll(Handler handler) {
+        boolean removed = false;
+        synchronized (queue) {
+            for (int i = queue.size() - 1; i >= 0; i--) {
+                if (queue.get(i).target == handler) {
+                    queue.remove(i);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    boolean has(Handler handler, int what) {
+        synchronized (queue) {
+            for (Message message : queue) {
+                if (message.target == handler && message.callback == null && message.what == what) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Message next() {
+        synchronized (queue) {
+            while (true) {
+                if (quit) {
+                    return null;
+                }
+                long now = SystemClock.uptimeMillis();
+                if (!queue.isEmpty() && queue.get(0).when <= now) {
+                    return queue.remove(0);
+                }
+                try {
+                    queue.wait(queue.isEmpty() ? 0 : Math.max(1, queue.get(0).when - now));
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package android.os;
+
+/**
+ * Stand-in of android.os.Message for off-device benchmark
+ */
+public final class Message {
+    public int what;
+    public int arg1;
+    public int arg2;
+    public Object obj;
+    Handler target;
+    Runnable callback;
+    long when;
+
+    public static Message obtain() {
+        return new Message();
+    }
+
+    public Handler getTarget() {
+        return target;
+    }
+
+    public void sendToTarget() {
+        target.sendMessage(this);
+    }
+}
@@ -0,0 +1,38 @@
+package android.os;
+
+public final class Parcel {
+    public static Parcel obtain() {
+        return null;
+    }
+
+    public void recycle() {
+    }
+
+    public void writeString(String s) {
+    }
+
+    public String readString() {
+        return null;
+    }
+
+    public void writeInt(int i) {
+    }
+
+    public int readInt() {
+        return 0;
+    }
+
+    public void writeLong(long l) {
+    }
+
+    public long readLong() {
+        return 0;
+    }
+
+    public void writeByteArray(byte[] b) {
+    }
+
+    public byte[] createByteArray() {
+        return null;
+    }
+}
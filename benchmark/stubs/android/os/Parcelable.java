@@ -0,0 +1,11 @@
+package android.os;
+
+public interface Parcelable {
+    interface Creator<T> {
+        T createFromParcel(Parcel p);
+        T[] newArray(int s);
+    }
+
+    void writeToParcel(Parcel p, int f);
+    int describeContents();
+}
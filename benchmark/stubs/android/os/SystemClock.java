@@ -0,0 +1,21 @@
+package android.os;
+
+/**
+ * Stand-in of android.os.SystemClock for off-device benchmark, both clocks backed by System.nanoTime()
+ */
+public final class SystemClock {
+    private SystemClock() {
+    }
+
+    public static long uptimeMillis() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static long elapsedRealtime() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    public static long elapsedRealtimeNanos() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,25 @@
+package android.service.wallpaper;
+
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+
+/**
+ * Stand-in of hidden android.service.wallpaper.IWallpaperConnection for off-device benchmark
+ */
+public interface IWallpaperConnection extends IInterface {
+    void attachEngine(IWallpaperEngine engine) throws RemoteException;
+
+    ParcelFileDescriptor setWallpaper(String name) throws RemoteException;
+
+    void engineShown(IWallpaperEngine engine) throws RemoteException;
+
+    abstract class Stub extends Binder implements IWallpaperConnection {
+        @Override
+        public IBinder asBinder() {
+            return this;
+        }
+    }
+}
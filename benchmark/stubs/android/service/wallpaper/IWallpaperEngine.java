@@ -0,0 +1,30 @@
+package android.service.wallpaper;
+
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.RemoteException;
+import android.view.MotionEvent;
+
+/**
+ * Stand-in of hidden android.service.wallpaper.IWallpaperEngine for off-device benchmark
+ */
+public interface IWallpaperEngine extends IInterface {
+    void setDesiredSize(int width, int height) throws RemoteException;
+
+    void setVisibility(boolean visible) throws RemoteException;
+
+    void dispatchPointer(MotionEvent event) throws RemoteException;
+
+    void dispatchWallpaperCommand(String action, int x, int y, int z, Bundle extras) throws RemoteException;
+
+    void destroy() throws RemoteException;
+
+    abstract class Stub extends Binder implements IWallpaperEngine {
+        @Override
+        public IBinder asBinder() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package android.service.wallpaper;
+
+import android.graphics.Rect;
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.IInterface;
+import android.os.RemoteException;
+
+/**
+ * Stand-in of hidden android.service.wallpaper.IWallpaperService for off-device benchmark
+ */
+public interface IWallpaperService extends IInterface {
+    void attach(IWallpaperConnection connection, IBinder windowToken, int windowType, boolean isPreview, int reqWidth, int reqHeight, Rect padding) throws RemoteException;
+
+    abstract class Stub extends Binder implements IWallpaperService {
+        public static IWallpaperService asInterface(IBinder binder) {
+            return binder instanceof IWallpaperService ? (IWallpaperService) binder : null;
+        }
+
+        @Override
+        public IBinder asBinder() {
+            return this;
+        }
+    }
+}
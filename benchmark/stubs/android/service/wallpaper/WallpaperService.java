@@ -0,0 +1,5 @@
+package android.service.wallpaper;
+
+public class WallpaperService {
+    public static final String SERVICE_INTERFACE = "android.service.wallpaper.WallpaperService";
+}
@@ -0,0 +1,5 @@
+package android.service.wallpaper;
+
+public class WallpaperSettingsActivity {
+    public static final String EXTRA_PREVIEW_MODE = "android.service.wallpaper.PREVIEW_MODE";
+}
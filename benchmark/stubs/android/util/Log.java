@@ -0,0 +1,33 @@
+package android.util;
+
+/**
+ * Stand-in of android.util.Log for off-device benchmark, warnings and errors printed to stderr
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int d(String tag, String message) {
+        return 0;
+    }
+
+    public static int i(String tag, String message) {
+        return 0;
+    }
+
+    public static int w(String tag, String message) {
+        System.err.println("W/" + tag + ": " + message);
+        return 0;
+    }
+
+    public static int e(String tag, String message) {
+        System.err.println("E/" + tag + ": " + message);
+        return 0;
+    }
+
+    public static int e(String tag, String message, Throwable throwable) {
+        e(tag, message);
+        throwable.printStackTrace();
+        return 0;
+    }
+}
@@ -0,0 +1,39 @@
+package android.util;
+
+public class LruCache<K, V> {
+    public LruCache(int m) {
+    }
+
+    protected int sizeOf(K k, V v) {
+        return 1;
+    }
+
+    protected void entryRemoved(boolean e, K k, V o, V n) {
+    }
+
+    public final V get(K k) {
+        return null;
+    }
+
+    public final V put(K k, V v) {
+        return null;
+    }
+
+    public final V remove(K k) {
+        return null;
+    }
+
+    public final void evictAll() {
+    }
+
+    public final int size() {
+        return 0;
+    }
+
+    public final int maxSize() {
+        return 0;
+    }
+
+    public void trimToSize(int m) {
+    }
+}
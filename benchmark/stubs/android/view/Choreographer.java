@@ -0,0 +1,72 @@
+package android.view;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Stand-in of android.view.Choreographer for off-device benchmark
+ * <p>
+ * Frame callbacks posted to looper of calling thread at next 16 ms frame boundary
+ */
+public final class Choreographer {
+    private static final long FRAME_INTERVAL = 16;
+    private static final ThreadLocal<Choreographer> CHOREOGRAPHER = new ThreadLocal<>();
+
+    private final Handler handler;
+
+    private Choreographer(Looper looper) {
+        this.handler = new Handler(looper);
+    }
+
+    public static Choreographer getInstance() {
+        Choreographer choreographer = CHOREOGRAPHER.get();
+        if (choreographer == null) {
+            Looper looper = Looper.myLooper();
+            if (looper == null) {
+                throw new IllegalStateException("The current thread must have a looper!");
+            }
+            CHOREOGRAPHER.set(choreographer = new Choreographer(looper));
+        }
+        return choreographer;
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+        long now = SystemClock.uptimeMillis();
+        handler.postAtTime(new FrameRunnable(callback), now - now % FRAME_INTERVAL + FRAME_INTERVAL);
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+        handler.removeCallbacks(new FrameRunnable(callback));
+    }
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    /**
+     * Runnables of same callback are equal, so removeFrameCallback() finds posted frame
+     */
+    private static final class FrameRunnable implements Runnable {
+        private final FrameCallback callback;
+
+        FrameRunnable(FrameCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            callback.doFrame(System.nanoTime());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FrameRunnable && ((FrameRunnable) o).callback == callback;
+        }
+
+        @Override
+        public int hashCode() {
+            return callback.hashCode();
+        }
+    }
+}
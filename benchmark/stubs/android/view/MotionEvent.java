@@ -0,0 +1,94 @@
+package android.view;
+
+/**
+ * Stand-in of android.view.MotionEvent for off-device benchmark, single pointer without history
+ */
+public final class MotionEvent {
+    public static final int ACTION_MASK = 0xff;
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+    public static final int ACTION_CANCEL = 3;
+    public static final int ACTION_POINTER_DOWN = 5;
+    public static final int ACTION_POINTER_UP = 6;
+    public static final int ACTION_POINTER_INDEX_MASK = 0xff00;
+    public static final int ACTION_POINTER_INDEX_SHIFT = 8;
+
+    private long downTime;
+    private long eventTime;
+    private int action;
+    private float x;
+    private float y;
+    private int metaState;
+    private boolean recycled;
+
+    private MotionEvent() {
+    }
+
+    public static MotionEvent obtain(long downTime, long eventTime, int action, float x, float y, int metaState) {
+        MotionEvent event = new MotionEvent();
+        event.downTime = downTime;
+        event.eventTime = eventTime;
+        event.action = action;
+        event.x = x;
+        event.y = y;
+        event.metaState = metaState;
+        return event;
+    }
+
+    public static MotionEvent obtain(MotionEvent other) {
+        return obtain(other.downTime, other.eventTime, other.action, other.x, other.y, other.metaState);
+    }
+
+    public static MotionEvent obtainNoHistory(MotionEvent other) {
+        return obtain(other);
+    }
+
+    public final int getAction() {
+        return action;
+    }
+
+    public final int getActionMasked() {
+        return action & ACTION_MASK;
+    }
+
+    public final int getActionIndex() {
+        return (action & ACTION_POINTER_INDEX_MASK) >> ACTION_POINTER_INDEX_SHIFT;
+    }
+
+    public final float getX() {
+        return x;
+    }
+
+    public final float getY() {
+        return y;
+    }
+
+    public final float getX(int pointerIndex) {
+        return x;
+    }
+
+    public final float getY(int pointerIndex) {
+        return y;
+    }
+
+    public final long getDownTime() {
+        return downTime;
+    }
+
+    public final long getEventTime() {
+        return eventTime;
+    }
+
+    public final void offsetLocation(float deltaX, float deltaY) {
+        x += deltaX;
+        y += deltaY;
+    }
+
+    public final void recycle() {
+        if (recycled) {
+            throw new IllegalStateException("MotionEvent recycled twice!");
+        }
+        recycled = true;
+    }
+}
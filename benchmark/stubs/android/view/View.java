@@ -0,0 +1,48 @@
+package android.view;
+
+public class View {
+    public View(android.content.Context context) {
+    }
+
+    public interface OnAttachStateChangeListener {
+        void onViewAttachedToWindow(View v);
+        void onViewDetachedFromWindow(View v);
+    }
+
+    public android.os.IBinder getWindowToken() {
+        return null;
+    }
+
+    public boolean isAttachedToWindow() {
+        return false;
+    }
+
+    public void addOnAttachStateChangeListener(OnAttachStateChangeListener l) {
+    }
+
+    public void removeOnAttachStateChangeListener(OnAttachStateChangeListener l) {
+    }
+
+    public ViewTreeObserver getViewTreeObserver() {
+        return null;
+    }
+
+    public boolean hasWindowFocus() {
+        return false;
+    }
+
+    public int getWidth() {
+        return 0;
+    }
+
+    public int getHeight() {
+        return 0;
+    }
+
+    public void getLocationInWindow(int[] outLocation) {
+    }
+
+    public boolean post(Runnable r) {
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package android.view;
+
+public abstract class ViewGroup extends View {
+    public ViewGroup(android.content.Context context) {
+        super(context);
+    }
+
+    public static class LayoutParams {
+        public int width;
+        public int height;
+
+        public LayoutParams(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package android.view;
+
+public final class ViewTreeObserver {
+    public interface OnWindowFocusChangeListener {
+        void onWindowFocusChanged(boolean f);
+    }
+
+    public void addOnWindowFocusChangeListener(OnWindowFocusChangeListener l) {
+    }
+
+    public void removeOnWindowFocusChangeListener(OnWindowFocusChangeListener l) {
+    }
+
+    public boolean isAlive() {
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package android.view;
+
+public interface WindowManager {
+    void addView(View view, ViewGroup.LayoutParams params);
+
+    void removeViewImmediate(View view);
+
+    class LayoutParams extends ViewGroup.LayoutParams {
+        public static final int TYPE_APPLICATION = 2;
+        public static final int FLAG_NOT_FOCUSABLE = 0x00000008;
+        public static final int FLAG_NOT_TOUCHABLE = 0x00000010;
+
+        public int x;
+        public int y;
+        public int type;
+        public int flags;
+        public int format;
+        public int gravity;
+
+        public LayoutParams(int w, int h, int xpos, int ypos, int type, int flags, int format) {
+            super(w, h);
+            this.x = xpos;
+            this.y = ypos;
+            this.type = type;
+            this.flags = flags;
+            this.format = format;
+        }
+    }
+}